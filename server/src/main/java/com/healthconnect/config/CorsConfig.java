@@ -17,6 +17,7 @@ public class CorsConfig {
                     .allowedOrigins("http://localhost:3000", "http://localhost:3001")
                     .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
                     .allowedHeaders("*")
+                    .exposedHeaders("X-Next-Cursor")
                     .allowCredentials(true);
             }
         };
@@ -0,0 +1,61 @@
+package com.healthconnect.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads an Instant from epoch millis, an ISO instant, or the older date formats the
+ * clients and stored orders still use ("yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd"), taken as UTC.
+ */
+public class LenientInstantDeserializer extends StdDeserializer<Instant> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final DateTimeFormatter LEGACY_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public LenientInstantDeserializer() {
+        super(Instant.class);
+    }
+
+    @Override
+    public Instant deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return Instant.ofEpochMilli(parser.getLongValue());
+        }
+        String text = parser.getValueAsString();
+        try {
+            return parse(text);
+        } catch (DateTimeParseException e) {
+            return (Instant) context.handleWeirdStringValue(Instant.class, text, "Unrecognised date: %s", e.getMessage());
+        }
+    }
+
+    // null for blank input; throws DateTimeParseException for anything unrecognised
+    public static Instant parse(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String value = text.trim();
+        if (value.length() == 10) {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        if (value.length() == 19 && value.charAt(10) == ' ') {
+            return LocalDateTime.parse(value, LEGACY_DATE_TIME).toInstant(ZoneOffset.UTC);
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC);
+        }
+    }
+}
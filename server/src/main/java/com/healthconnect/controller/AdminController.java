@@ -2,10 +2,25 @@ package com.healthconnect.controller;
 
 import com.healthconnect.model.*;
 import com.healthconnect.repository.*;
+import com.healthconnect.service.FulfillmentService;
+import com.healthconnect.service.LedgerPostingService;
+import com.healthconnect.service.MedicineCatalogCache;
+import com.healthconnect.service.MedicineSearchIndex;
+import com.healthconnect.service.MessageBucketMigrationService;
+import com.healthconnect.service.MessageStorageService;
+import com.healthconnect.service.NdjsonStreamingService;
+import com.healthconnect.service.OrderPlacementService;
+import com.healthconnect.service.RevenueRollupService;
+import com.healthconnect.service.WalletDistributionDispatcher;
+import com.healthconnect.service.StatusTransitionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +45,12 @@ public class AdminController {
     @Autowired
     private MedicineRepository medicineRepository;
     
+    @Autowired
+    private MedicineSearchIndex medicineSearchIndex;
+
+    @Autowired
+    private MedicineCatalogCache medicineCatalogCache;
+
     @Autowired
     private PrescriptionRepository prescriptionRepository;
     
@@ -37,7 +58,31 @@ public class AdminController {
     private OrderRepository orderRepository;
     
     @Autowired
-    private MessageRepository messageRepository;
+    private OrderPlacementService orderPlacementService;
+
+    @Autowired
+    private StatusTransitionService statusTransitionService;
+
+    @Autowired
+    private FulfillmentService fulfillmentService;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private WalletDistributionDispatcher walletDistributionDispatcher;
+
+    @Autowired
+    private LedgerPostingService ledgerPostingService;
+
+    @Autowired
+    private MessageStorageService messageStorageService;
+
+    @Autowired
+    private MessageBucketMigrationService messageBucketMigrationService;
+
+    @Autowired
+    private NdjsonStreamingService ndjsonStreamingService;
 
     // Admin Authentication
     @GetMapping("/test-admins")
@@ -106,6 +151,11 @@ public class AdminController {
         return ResponseEntity.ok(doctorRepository.findAll());
     }
 
+    @GetMapping(value = "/doctors", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllDoctors() {
+        return ndjsonStreamingService.stream(Doctor.class);
+    }
+
     @PostMapping("/doctors")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doctor) {
         return ResponseEntity.ok(doctorRepository.save(doctor));
@@ -129,6 +179,11 @@ public class AdminController {
         return ResponseEntity.ok(patientRepository.findAll());
     }
 
+    @GetMapping(value = "/patients", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPatients() {
+        return ndjsonStreamingService.stream(Patient.class);
+    }
+
     @PutMapping("/patients/{id}")
     public ResponseEntity<Patient> updatePatient(@PathVariable String id, @RequestBody Patient patient) {
         patient.setId(id);
@@ -147,10 +202,18 @@ public class AdminController {
         return ResponseEntity.ok(appointmentRepository.findAll());
     }
 
+    @GetMapping(value = "/appointments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments() {
+        return ndjsonStreamingService.stream(Appointment.class);
+    }
+
     @PutMapping("/appointments/{id}")
     public ResponseEntity<Appointment> updateAppointment(@PathVariable String id, @RequestBody Appointment appointment) {
-        appointment.setId(id);
-        return ResponseEntity.ok(appointmentRepository.save(appointment));
+        Appointment updated = appointmentRepository.updateEditableFields(id, appointment);
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(updated);
     }
 
     @DeleteMapping("/appointments/{id}")
@@ -165,52 +228,147 @@ public class AdminController {
         return ResponseEntity.ok(medicineRepository.findAll());
     }
 
+    @GetMapping(value = "/medicines", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMedicines() {
+        return ndjsonStreamingService.stream(Medicine.class);
+    }
+
     @PostMapping("/medicines")
     public ResponseEntity<Medicine> createMedicine(@RequestBody Medicine medicine) {
-        return ResponseEntity.ok(medicineRepository.save(medicine));
+        Medicine saved = medicineRepository.save(medicine);
+        medicineSearchIndex.upsert(saved);
+        medicineCatalogCache.evict(saved.getId(), saved.getCategory());
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/medicines/{id}")
     public ResponseEntity<Medicine> updateMedicine(@PathVariable String id, @RequestBody Medicine medicine) {
-        medicine.setId(id);
-        return ResponseEntity.ok(medicineRepository.save(medicine));
+        Medicine saved = medicineRepository.updateEditableFields(id, medicine);
+        if (saved == null) {
+            return ResponseEntity.notFound().build();
+        }
+        medicineSearchIndex.upsert(saved);
+        medicineCatalogCache.evictWithAllCategories(id);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/medicines/{id}")
     public ResponseEntity<?> deleteMedicine(@PathVariable String id) {
         medicineRepository.deleteById(id);
+        medicineSearchIndex.remove(id);
+        medicineCatalogCache.evictWithAllCategories(id);
         return ResponseEntity.ok("Medicine deleted successfully");
     }
 
     // Order Management
+    // Same paging and filters as GET /api/orders (next page cursor in X-Next-Cursor)
     @GetMapping("/orders")
-    public ResponseEntity<List<MedicineOrder>> getAllOrders() {
-        return ResponseEntity.ok(orderRepository.findAll());
+    public ResponseEntity<?> getAllOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String patientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            OrderRepositoryCustom.OrderPage page = orderRepository.findPage(
+                new OrderRepositoryCustom.OrderFilter(status, patientId, from, to, minAmount, maxAmount),
+                cursor, Math.max(1, Math.min(limit, 500)));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(OrderController.NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.orders());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/orders", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return ndjsonStreamingService.stream(MedicineOrder.class);
     }
 
     @PutMapping("/orders/{id}/status")
-    public ResponseEntity<MedicineOrder> updateOrderStatus(@PathVariable String id, @RequestBody Map<String, String> body) {
-        Optional<MedicineOrder> order = orderRepository.findById(id);
-        if (order.isPresent()) {
-            MedicineOrder updatedOrder = order.get();
-            updatedOrder.setStatus(body.get("status"));
-            return ResponseEntity.ok(orderRepository.save(updatedOrder));
+    public ResponseEntity<?> updateOrderStatus(@PathVariable String id, @RequestBody Map<String, String> body) {
+        OrderStatus target;
+        try {
+            target = OrderStatus.valueOf(String.valueOf(body.get("status")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unknown order status: " + body.get("status"));
         }
-        return ResponseEntity.notFound().build();
+        StatusTransitionService.TransitionResult<MedicineOrder> result =
+            statusTransitionService.transition(MedicineOrder.class, id, target.name(), target.allowedFrom());
+        return switch (result.outcome()) {
+            case UPDATED -> {
+                orderPlacementService.onStatusChanged(id, target.name());
+                yield ResponseEntity.ok(result.document());
+            }
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case ILLEGAL_TRANSITION -> ResponseEntity.status(409)
+                .body("Cannot change order status from " + result.status() + " to " + target);
+        };
     }
 
     @DeleteMapping("/orders/{id}")
     public ResponseEntity<?> deleteOrder(@PathVariable String id) {
         orderRepository.deleteById(id);
+        orderPlacementService.onStatusChanged(id, "CANCELLED");
         return ResponseEntity.ok("Order deleted successfully");
     }
 
+    // Fulfillment queue depth, worker usage and per-stage latency on this node
+    @GetMapping("/fulfillment/metrics")
+    public ResponseEntity<Map<String, Object>> getFulfillmentMetrics() {
+        return ResponseEntity.ok(fulfillmentService.getMetrics());
+    }
+
+    // Count successful payments missing from revenue_rollups (runs in the background)
+    @PostMapping("/revenue/backfill")
+    public ResponseEntity<?> startRevenueBackfill() {
+        if (!revenueRollupService.startBackfill()) {
+            return ResponseEntity.status(409).body(revenueRollupService.getBackfillStatus());
+        }
+        return ResponseEntity.accepted().body(revenueRollupService.getBackfillStatus());
+    }
+
+    @GetMapping("/revenue/backfill")
+    public ResponseEntity<Map<String, Object>> getRevenueBackfillStatus() {
+        return ResponseEntity.ok(revenueRollupService.getBackfillStatus());
+    }
+
+    // Payment -> wallet outbox backlog and delivery counters
+    @GetMapping("/wallet-outbox")
+    public ResponseEntity<Map<String, Object>> getWalletOutboxStatus() {
+        return ResponseEntity.ok(walletDistributionDispatcher.getStatus());
+    }
+
+    // Debits vs credits over every ledger posting (streams the whole collection)
+    @GetMapping("/ledger/trial-balance")
+    public ResponseEntity<Map<String, Object>> getTrialBalance() {
+        return ResponseEntity.ok(ledgerPostingService.trialBalance());
+    }
+
+    // Running totals of one ledger account, e.g. /ledger/accounts/PLATFORM/platform
+    @GetMapping("/ledger/accounts/{ownerType}/{ownerId}")
+    public ResponseEntity<?> getLedgerAccount(@PathVariable String ownerType, @PathVariable String ownerId) {
+        LedgerAccount account = ledgerPostingService.getAccount(ownerType.toUpperCase(), ownerId);
+        return account != null ? ResponseEntity.ok(account) : ResponseEntity.notFound().build();
+    }
+
     // Prescription Management
     @GetMapping("/prescriptions")
     public ResponseEntity<List<Prescription>> getAllPrescriptions() {
         return ResponseEntity.ok(prescriptionRepository.findAll());
     }
 
+    @GetMapping(value = "/prescriptions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPrescriptions() {
+        return ndjsonStreamingService.stream(Prescription.class);
+    }
+
     @DeleteMapping("/prescriptions/{id}")
     public ResponseEntity<?> deletePrescription(@PathVariable String id) {
         prescriptionRepository.deleteById(id);
@@ -220,21 +378,45 @@ public class AdminController {
     // Message Management
     @GetMapping("/messages")
     public ResponseEntity<List<Message>> getAllMessages() {
-        return ResponseEntity.ok(messageRepository.findAll());
+        return ResponseEntity.ok(messageStorageService.findAll());
+    }
+
+    @GetMapping(value = "/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMessages() {
+        return ndjsonStreamingService.stream(messageStorageService::streamAll, Message.class);
     }
 
     @DeleteMapping("/messages/{id}")
     public ResponseEntity<?> deleteMessage(@PathVariable String id) {
-        messageRepository.deleteById(id);
+        messageStorageService.deleteById(id);
         return ResponseEntity.ok("Message deleted successfully");
     }
 
+    // Copy existing messages into time buckets (for messages.storage.mode=bucketed)
+    @PostMapping("/messages/rebucket")
+    public ResponseEntity<?> rebucketMessages() {
+        if (!messageBucketMigrationService.start()) {
+            return ResponseEntity.status(409).body(messageBucketMigrationService.getStatus());
+        }
+        return ResponseEntity.accepted().body(messageBucketMigrationService.getStatus());
+    }
+
+    @GetMapping("/messages/rebucket")
+    public ResponseEntity<?> getRebucketStatus() {
+        return ResponseEntity.ok(messageBucketMigrationService.getStatus());
+    }
+
     // Admin Management ( Admin only features)
     @GetMapping("/admins")
     public ResponseEntity<List<Admin>> getAllAdmins() {
         return ResponseEntity.ok(adminRepository.findAll());
     }
 
+    @GetMapping(value = "/admins", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAdmins() {
+        return ndjsonStreamingService.stream(Admin.class);
+    }
+
     @PutMapping("/admins/{id}/activate")
     public ResponseEntity<Admin> activateAdmin(@PathVariable String id) {
         Optional<Admin> admin = adminRepository.findById(id);
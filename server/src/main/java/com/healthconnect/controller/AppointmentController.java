@@ -1,12 +1,17 @@
 package com.healthconnect.controller;
 
 import com.healthconnect.model.Appointment;
+import com.healthconnect.model.AppointmentStatus;
+import com.healthconnect.model.StatusChange;
 import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.service.StatusTransitionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,9 +23,16 @@ public class AppointmentController {
     
     @Autowired
     private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private StatusTransitionService statusTransitionService;
     
     @PostMapping
     public ResponseEntity<?> createAppointment(@RequestBody Appointment appointment) {
+        // Every appointment starts PENDING; later statuses only come from PATCH /{id}/status
+        appointment.setStatus(AppointmentStatus.PENDING.name());
+        appointment.setStatusHistory(new ArrayList<>(List.of(
+            new StatusChange(AppointmentStatus.PENDING.name(), Instant.now()))));
         Appointment saved = appointmentRepository.save(appointment);
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
@@ -49,27 +61,32 @@ public class AppointmentController {
     
     @PutMapping("/{id}")
     public ResponseEntity<?> updateAppointment(@PathVariable String id, @RequestBody Appointment appointment) {
-        Optional<Appointment> existing = appointmentRepository.findById(id);
-        if (existing.isEmpty()) {
+        // Status and history are ignored here; use PATCH /{id}/status
+        Appointment updated = appointmentRepository.updateEditableFields(id, appointment);
+        if (updated == null) {
             return ResponseEntity.notFound().build();
         }
-        
-        appointment.setId(id);
-        Appointment updated = appointmentRepository.save(appointment);
         return ResponseEntity.ok(updated);
     }
     
+    // PENDING -> CONFIRMED -> COMPLETED, or CANCELLED before completion; 409 on any other change
     @PatchMapping("/{id}/status")
     public ResponseEntity<?> updateAppointmentStatus(@PathVariable String id, @RequestBody Map<String, String> status) {
-        Optional<Appointment> existing = appointmentRepository.findById(id);
-        if (existing.isEmpty()) {
-            return ResponseEntity.notFound().build();
+        AppointmentStatus target;
+        try {
+            target = AppointmentStatus.valueOf(String.valueOf(status.get("status")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown appointment status: " + status.get("status")));
         }
         
-        Appointment appointment = existing.get();
-        appointment.setStatus(status.get("status"));
-        Appointment updated = appointmentRepository.save(appointment);
-        return ResponseEntity.ok(updated);
+        StatusTransitionService.TransitionResult<Appointment> result =
+            statusTransitionService.transition(Appointment.class, id, target.name(), target.allowedFrom());
+        return switch (result.outcome()) {
+            case UPDATED -> ResponseEntity.ok(result.document());
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case ILLEGAL_TRANSITION -> ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Cannot change appointment status from " + result.status() + " to " + target));
+        };
     }
     
     @DeleteMapping("/{id}")
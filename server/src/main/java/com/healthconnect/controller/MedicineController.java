@@ -2,10 +2,13 @@ package com.healthconnect.controller;
 
 import com.healthconnect.model.Medicine;
 import com.healthconnect.repository.MedicineRepository;
+import com.healthconnect.service.MedicineCatalogCache;
+import com.healthconnect.service.MedicineSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -18,33 +21,78 @@ public class MedicineController {
     
     @Autowired
     private MedicineRepository medicineRepository;
+
+    @Autowired
+    private MedicineSearchIndex medicineSearchIndex;
+
+    @Autowired
+    private MedicineCatalogCache medicineCatalogCache;
     
     @PostMapping
     public ResponseEntity<?> createMedicine(@RequestBody Medicine medicine) {
         Medicine saved = medicineRepository.save(medicine);
+        medicineSearchIndex.upsert(saved);
+        medicineCatalogCache.evict(saved.getId(), saved.getCategory());
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
     
+    // Catalog reads are served from the cache and carry an ETag for 304 revalidation
     @GetMapping
-    public ResponseEntity<List<Medicine>> getAllMedicines() {
-        return ResponseEntity.ok(medicineRepository.findAll());
+    public ResponseEntity<List<Medicine>> getAllMedicines(WebRequest request) {
+        MedicineCatalogCache.Listing listing = medicineCatalogCache.getAll();
+        if (request.checkNotModified(listing.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(listing.eTag()).build();
+        }
+        return ResponseEntity.ok().eTag(listing.eTag()).body(listing.medicines());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<?> getMedicineById(@PathVariable String id) {
-        return medicineRepository.findById(id)
-            .map(ResponseEntity::ok)
-            .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> getMedicineById(@PathVariable String id, WebRequest request) {
+        Optional<Medicine> medicine = medicineCatalogCache.getById(id);
+        if (medicine.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = MedicineCatalogCache.eTagOf(List.of(medicine.get()));
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(medicine.get());
     }
     
+    // Hit/miss metrics for the catalog cache
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(medicineCatalogCache.getStats());
+    }
+    
+    /**
+     * Ranked search over name, category and description (served from the in-memory trigram index)
+     * GET /api/medicines/search?query=para&limit=20&fuzzy=false
+     * fuzzy=true tolerates typos ("paracetmol").
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<Medicine>> searchMedicines(@RequestParam String query) {
-        return ResponseEntity.ok(medicineRepository.findByNameContainingIgnoreCase(query));
+    public ResponseEntity<List<Medicine>> searchMedicines(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
+        return ResponseEntity.ok(medicineSearchIndex.search(query, Math.max(1, Math.min(limit, 100)), fuzzy));
+    }
+
+    // Name suggestions for the search box
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<String>> autocomplete(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(medicineSearchIndex.autocomplete(prefix, Math.max(1, Math.min(limit, 50))));
     }
     
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Medicine>> getMedicinesByCategory(@PathVariable String category) {
-        return ResponseEntity.ok(medicineRepository.findByCategory(category));
+    public ResponseEntity<List<Medicine>> getMedicinesByCategory(@PathVariable String category, WebRequest request) {
+        MedicineCatalogCache.Listing listing = medicineCatalogCache.getByCategory(category);
+        if (request.checkNotModified(listing.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(listing.eTag()).build();
+        }
+        return ResponseEntity.ok().eTag(listing.eTag()).body(listing.medicines());
     }
     
     @PutMapping("/{id}")
@@ -54,8 +102,12 @@ public class MedicineController {
             return ResponseEntity.notFound().build();
         }
         
-        medicine.setId(id);
-        Medicine updated = medicineRepository.save(medicine);
+        Medicine updated = medicineRepository.updateEditableFields(id, medicine);
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        medicineSearchIndex.upsert(updated);
+        medicineCatalogCache.evict(id, existing.get().getCategory(), updated.getCategory());
         return ResponseEntity.ok(updated);
     }
     
@@ -67,6 +119,8 @@ public class MedicineController {
         }
         
         medicineRepository.deleteById(id);
+        medicineSearchIndex.remove(id);
+        medicineCatalogCache.evict(id, existing.get().getCategory());
         return ResponseEntity.ok(Map.of("message", "Medicine deleted successfully"));
     }
 }
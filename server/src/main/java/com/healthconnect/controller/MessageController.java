@@ -1,42 +1,141 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.model.Conversation;
 import com.healthconnect.model.Message;
-import com.healthconnect.repository.MessageRepository;
+import com.healthconnect.service.ConversationService;
+import com.healthconnect.service.MessageStorageService;
+import com.healthconnect.service.MessageStreamService;
+import com.healthconnect.service.NdjsonStreamingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/messages")
 @CrossOrigin(origins = "http://localhost:3000")
 public class MessageController {
-    
+
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final long MAX_POLL_TIMEOUT_MS = 60_000;
+
+    @Autowired
+    private MessageStorageService messageStorageService;
+
+    @Autowired
+    private MessageStreamService messageStreamService;
+
     @Autowired
-    private MessageRepository messageRepository;
-    
+    private ConversationService conversationService;
+
+    @Autowired
+    private NdjsonStreamingService ndjsonStreamingService;
+
     @PostMapping
     public ResponseEntity<?> sendMessage(@RequestBody Message message) {
-        Message saved = messageRepository.save(message);
+        if (message.getSenderId() == null || message.getReceiverId() == null) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "senderId and receiverId are required"));
+        }
+
+        // Server clock decides ordering so pages stay consistent across clients
+        message.setTimestamp(Instant.now());
+        message.setConversationKey(Message.conversationKey(message.getSenderId(), message.getReceiverId()));
+        Message saved = messageStorageService.save(message);
+        conversationService.recordMessage(saved);
+        messageStreamService.publish(saved);
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
-    
+
     @GetMapping
     public ResponseEntity<List<Message>> getAllMessages() {
-        return ResponseEntity.ok(messageRepository.findAll());
+        return ResponseEntity.ok(messageStorageService.findAll());
     }
-    
+
+    // Same list streamed as NDJSON (Accept: application/x-ndjson)
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMessages() {
+        return ndjsonStreamingService.stream(messageStorageService::streamAll, Message.class);
+    }
+
+    /**
+     * Get one page of a conversation, oldest first
+     * GET /api/messages/conversation?userId1=..&userId2=..&before=<ISO instant>&beforeId=..&limit=50
+     * To load older messages, pass the timestamp and id of the first message of the current page as "before"/"beforeId".
+     */
     @GetMapping("/conversation")
     public ResponseEntity<List<Message>> getConversation(
-            @RequestParam String userId1, 
-            @RequestParam String userId2) {
-        List<Message> messages = messageRepository.findAll().stream()
-            .filter(m -> (m.getSenderId().equals(userId1) && m.getReceiverId().equals(userId2)) ||
-                        (m.getSenderId().equals(userId2) && m.getReceiverId().equals(userId1)))
-            .collect(Collectors.toList());
+            @RequestParam String userId1,
+            @RequestParam String userId2,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant before,
+            @RequestParam(required = false) String beforeId,
+            @RequestParam(defaultValue = "50") int limit) {
+        String conversationKey = Message.conversationKey(userId1, userId2);
+        List<Message> messages = messageStorageService.findConversation(
+            conversationKey, before, beforeId, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+
+        // Index is walked newest-first; clients render oldest-first
+        Collections.reverse(messages);
         return ResponseEntity.ok(messages);
     }
+
+    /**
+     * Conversation list for a user, most recently active first
+     * GET /api/messages/inbox?userId=..&before=<ISO instant>&beforeId=..&limit=20
+     * The next page continues from the last entry: its lastMessageAt as "before" and its id as "beforeId".
+     * Each entry carries the last message preview and per-participant unread counts.
+     */
+    @GetMapping("/inbox")
+    public ResponseEntity<List<Conversation>> getInbox(
+            @RequestParam String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant before,
+            @RequestParam(required = false) String beforeId,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(conversationService.getInbox(userId, before, beforeId,
+            Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
+    }
+
+    // Read receipt: reset the user's unread counter for a conversation
+    @PutMapping("/conversation/read")
+    public ResponseEntity<?> markConversationRead(@RequestParam String userId, @RequestParam String otherUserId) {
+        if (!conversationService.markRead(userId, otherUserId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Conversation marked as read"));
+    }
+
+    /**
+     * Real-time delivery of new messages for a user
+     * GET /api/messages/stream?userId=..  (text/event-stream, event name "message")
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(@RequestParam String userId) {
+        return messageStreamService.subscribe(userId);
+    }
+
+    /**
+     * Long-poll fallback for clients that cannot keep a stream open
+     * GET /api/messages/poll?userId=..&since=<ISO instant>&sinceId=..&timeoutMs=25000
+     * Returns only messages after the last one seen: its timestamp as "since" and its id as "sinceId",
+     * which picks up messages sharing that millisecond (without "since", only messages arriving during
+     * the poll); an empty list means the poll timed out.
+     */
+    @GetMapping("/poll")
+    public DeferredResult<List<Message>> pollMessages(
+            @RequestParam String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+            @RequestParam(required = false) String sinceId,
+            @RequestParam(defaultValue = "25000") long timeoutMs) {
+        return messageStreamService.poll(userId, since, sinceId, Math.max(1_000, Math.min(timeoutMs, MAX_POLL_TIMEOUT_MS)));
+    }
 }
@@ -1,15 +1,31 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.dto.BulkOrderStatusRequest;
+import com.healthconnect.dto.PlaceOrderRequest;
 import com.healthconnect.model.MedicineOrder;
 import com.healthconnect.model.OrderItem;
+import com.healthconnect.model.OrderStatus;
 import com.healthconnect.repository.OrderRepository;
+import com.healthconnect.repository.OrderRepositoryCustom;
+import com.healthconnect.service.IdempotencyService;
+import com.healthconnect.service.NdjsonStreamingService;
+import com.healthconnect.service.OrderPlacementService;
+import com.healthconnect.service.OrderPricingService;
+import com.healthconnect.service.StatusTransitionService;
+import com.healthconnect.service.StockReservationService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,83 +35,61 @@ import java.util.Optional;
 @RequestMapping("/api/orders")
 @CrossOrigin(origins = "http://localhost:3000")
 public class OrderController {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 500;
     
     @Autowired
     private OrderRepository orderRepository;
+
+    @Autowired
+    private NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    private OrderPlacementService orderPlacementService;
+
+    @Autowired
+    private StatusTransitionService statusTransitionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Value("${orders.bulk-status.max-batch:5000}")
+    private int maxBulkStatusBatch;
     
     /**
      * Place a new order from the shopping cart
      * POST /api/orders/place
-     * Body: { "patientId": "123", "medicines": [...], "totalPrice": 80 }
+     * Body: { "patientId": "123", "medicines": [...], "totalPrice": 80 } (see PlaceOrderRequest)
      * Returns: { "message": "Order placed successfully", "orderId": "..." }
+     * Send an Idempotency-Key header to make retries return the first response instead of placing again.
      */
     @PostMapping("/place")
-    public ResponseEntity<?> placeOrder(@RequestBody Map<String, Object> orderData) {
+    public ResponseEntity<?> placeOrder(@Valid @RequestBody PlaceOrderRequest request,
+                                        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("orders.place", idempotencyKey, request, () -> doPlaceOrder(request));
+    }
+
+    private ResponseEntity<?> doPlaceOrder(PlaceOrderRequest request) {
         try {
             // Create new order object
             MedicineOrder order = new MedicineOrder();
-            
-            // Set patient ID
-            if (orderData.containsKey("patientId")) {
-                order.setPatientId((String) orderData.get("patientId"));
-            } else {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Patient ID is required"));
-            }
-            
-            // Set optional patient details
-            if (orderData.containsKey("patientName")) {
-                order.setPatientName((String) orderData.get("patientName"));
-            }
-            if (orderData.containsKey("patientAddress")) {
-                order.setPatientAddress((String) orderData.get("patientAddress"));
-            }
-            if (orderData.containsKey("patientPhone")) {
-                order.setPatientPhone((String) orderData.get("patientPhone"));
-            }
-            
-            // Set medicines/items
-            if (orderData.containsKey("medicines")) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> medicinesData = (List<Map<String, Object>>) orderData.get("medicines");
-                List<OrderItem> items = medicinesData.stream().map(med -> {
-                    OrderItem item = new OrderItem();
-                    if (med.containsKey("medicineId")) {
-                        item.setMedicineId(String.valueOf(med.get("medicineId")));
-                    }
-                    if (med.containsKey("medicineName")) {
-                        item.setMedicineName((String) med.get("medicineName"));
-                    }
-                    if (med.containsKey("name")) {
-                        item.setName((String) med.get("name"));
-                    }
-                    if (med.containsKey("quantity")) {
-                        item.setQuantity(((Number) med.get("quantity")).intValue());
-                    }
-                    if (med.containsKey("price")) {
-                        item.setPrice(((Number) med.get("price")).doubleValue());
-                    }
-                    return item;
-                }).toList();
-                order.setItems(items);
-            }
-            
-            // Set total amount
-            if (orderData.containsKey("totalPrice")) {
-                order.setTotalAmount(((Number) orderData.get("totalPrice")).doubleValue());
-            } else if (orderData.containsKey("totalAmount")) {
-                order.setTotalAmount(((Number) orderData.get("totalAmount")).doubleValue());
-            }
+            order.setPatientId(request.patientId());
+            order.setPatientName(request.patientName());
+            order.setPatientAddress(request.patientAddress());
+            order.setPatientPhone(request.patientPhone());
+            order.setItems(request.medicines().stream()
+                .map(med -> new OrderItem(med.medicineId(), med.medicineName(), med.name(), med.quantity(), med.price()))
+                .toList());
             
             // Set default status
             order.setStatus("PLACED");
             
             // Set order date (current date-time)
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            order.setOrderDate(LocalDateTime.now().format(formatter));
+            order.setOrderDate(Instant.now());
             
-            // Save to database
-            MedicineOrder savedOrder = orderRepository.save(order);
+            // Price, reserve stock and save
+            MedicineOrder savedOrder = orderPlacementService.place(order, request.clientTotal());
             
             // Return success response
             Map<String, String> response = new HashMap<>();
@@ -104,6 +98,15 @@ public class OrderController {
             
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
             
+        } catch (OrderPricingService.PriceMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "expectedTotal", e.getExpectedTotal(),
+                    "submittedTotal", e.getSubmittedTotal()));
+        } catch (StockReservationService.InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Insufficient stock", "medicineIds", e.getMedicineIds()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             // Log the error (in production, use proper logging)
             e.printStackTrace();
@@ -120,17 +123,21 @@ public class OrderController {
     @PostMapping
     public ResponseEntity<?> createOrder(@RequestBody MedicineOrder order) {
         try {
-            // Set default values if not provided
-            if (order.getStatus() == null || order.getStatus().isEmpty()) {
-                order.setStatus("PLACED");
-            }
-            if (order.getOrderDate() == null || order.getOrderDate().isEmpty()) {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                order.setOrderDate(LocalDateTime.now().format(formatter));
+            if (order.getOrderDate() == null) {
+                order.setOrderDate(Instant.now());
             }
             
-            MedicineOrder saved = orderRepository.save(order);
+            MedicineOrder saved = orderPlacementService.place(order, order.getTotalAmount());
             return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+        } catch (OrderPricingService.PriceMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "expectedTotal", e.getExpectedTotal(),
+                    "submittedTotal", e.getSubmittedTotal()));
+        } catch (StockReservationService.InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Insufficient stock", "medicineIds", e.getMedicineIds()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -138,9 +145,39 @@ public class OrderController {
         }
     }
     
+    /**
+     * List orders, newest first, one page at a time
+     * GET /api/orders?status=..&patientId=..&from=<ISO instant>&to=<ISO instant>&minAmount=..&maxAmount=..&limit=50
+     * When more orders match, the response carries an X-Next-Cursor header; pass it back as "cursor" for the next page.
+     */
     @GetMapping
-    public ResponseEntity<List<MedicineOrder>> getAllOrders() {
-        return ResponseEntity.ok(orderRepository.findAll());
+    public ResponseEntity<?> getAllOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String patientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            OrderRepositoryCustom.OrderPage page = orderRepository.findPage(
+                new OrderRepositoryCustom.OrderFilter(status, patientId, from, to, minAmount, maxAmount),
+                cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.orders());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Same list streamed as NDJSON (Accept: application/x-ndjson)
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return ndjsonStreamingService.stream(MedicineOrder.class);
     }
     
     @GetMapping("/{id}")
@@ -158,14 +195,12 @@ public class OrderController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updateOrder(@PathVariable String id, @RequestBody MedicineOrder order) {
         try {
-            Optional<MedicineOrder> existing = orderRepository.findById(id);
-            if (existing.isEmpty()) {
+            // Status and history are ignored here; use PATCH /{id}/status
+            MedicineOrder updated = orderRepository.updateEditableFields(id, order);
+            if (updated == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "Order not found"));
             }
-            
-            order.setId(id);
-            MedicineOrder updated = orderRepository.save(order);
             return ResponseEntity.ok(updated);
         } catch (Exception e) {
             e.printStackTrace();
@@ -174,24 +209,92 @@ public class OrderController {
         }
     }
     
+    /**
+     * Move an order along PLACED -> PROCESSING -> SHIPPED -> DELIVERED (or CANCELLED before shipping)
+     * PATCH /api/orders/{id}/status  Body: { "status": "SHIPPED" }
+     * Returns 409 when the order's current status does not allow the change.
+     */
     @PatchMapping("/{id}/status")
     public ResponseEntity<?> updateOrderStatus(@PathVariable String id, @RequestBody Map<String, String> status) {
+        OrderStatus target;
         try {
-            Optional<MedicineOrder> existing = orderRepository.findById(id);
-            if (existing.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Order not found"));
+            target = OrderStatus.valueOf(String.valueOf(status.get("status")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown order status: " + status.get("status")));
+        }
+        
+        StatusTransitionService.TransitionResult<MedicineOrder> result =
+            statusTransitionService.transition(MedicineOrder.class, id, target.name(), target.allowedFrom());
+        return switch (result.outcome()) {
+            case UPDATED -> {
+                orderPlacementService.onStatusChanged(id, target.name());
+                yield ResponseEntity.ok(result.document());
             }
-            
-            MedicineOrder order = existing.get();
-            order.setStatus(status.get("status"));
-            MedicineOrder updated = orderRepository.save(order);
-            return ResponseEntity.ok(updated);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(Map.of("error", "Failed to update order status", "details", e.getMessage()));
+            case NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Order not found"));
+            case ILLEGAL_TRANSITION -> ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Cannot change order status from " + result.status() + " to " + target));
+        };
+    }
+    
+    /**
+     * Change the status of many orders at once, e.g. everything dispatched today to SHIPPED
+     * PATCH /api/orders/status
+     * Body: { "orderIds": ["..", ".."], "status": "SHIPPED" }
+     *   or: { "filter": { "status": "PROCESSING", "patientId": "optional" }, "status": "SHIPPED" }
+     * Each order is checked against the same transitions as the single-order endpoint;
+     * the response lists the outcome per ID.
+     */
+    @PatchMapping("/status")
+    public ResponseEntity<?> bulkUpdateOrderStatus(@Valid @RequestBody BulkOrderStatusRequest request) {
+        OrderStatus target;
+        try {
+            target = OrderStatus.valueOf(request.status());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown order status: " + request.status()));
+        }
+        if ((request.orderIds() == null) == (request.filter() == null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Provide either orderIds or filter"));
+        }
+
+        List<String> orderIds;
+        if (request.orderIds() != null) {
+            orderIds = request.orderIds();
+        } else {
+            Criteria criteria = Criteria.where("status").is(request.filter().status());
+            if (request.filter().patientId() != null) {
+                criteria.and("patientId").is(request.filter().patientId());
+            }
+            orderIds = statusTransitionService.findIds(MedicineOrder.class, criteria, maxBulkStatusBatch + 1);
         }
+        if (orderIds.size() > maxBulkStatusBatch) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "At most " + maxBulkStatusBatch + " orders can be updated per request"));
+        }
+
+        Map<String, StatusTransitionService.TransitionResult<MedicineOrder>> results =
+            statusTransitionService.bulkTransition(MedicineOrder.class, orderIds, target.name(), target.allowedFrom());
+
+        List<String> updatedIds = new ArrayList<>();
+        List<Map<String, Object>> items = new ArrayList<>(results.size());
+        results.forEach((id, result) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("orderId", id);
+            item.put("outcome", result.outcome());
+            item.put("status", result.status());
+            items.add(item);
+            if (result.outcome() == StatusTransitionService.Outcome.UPDATED) {
+                updatedIds.add(id);
+            }
+        });
+        orderPlacementService.onStatusChanged(updatedIds, target.name());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", target);
+        response.put("requested", results.size());
+        response.put("updated", updatedIds.size());
+        response.put("results", items);
+        return ResponseEntity.ok(response);
     }
     
     @DeleteMapping("/{id}")
@@ -204,6 +307,7 @@ public class OrderController {
             }
             
             orderRepository.deleteById(id);
+            orderPlacementService.onStatusChanged(id, "CANCELLED");
             return ResponseEntity.ok(Map.of("message", "Order deleted successfully"));
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,10 +1,28 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.dto.ConfirmPaymentRequest;
+import com.healthconnect.dto.ConsultationPaymentRequest;
+import com.healthconnect.dto.MedicinePaymentRequest;
+import com.healthconnect.dto.PaymentItemRequest;
 import com.healthconnect.model.Payment;
+import com.healthconnect.repository.PaymentRepositoryCustom;
+import com.healthconnect.service.IdempotencyService;
+import com.healthconnect.service.NdjsonStreamingService;
 import com.healthconnect.service.PaymentService;
+import com.healthconnect.service.RevenueRollupService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +34,15 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
     // Create payment order
     @PostMapping("/create-order")
     public ResponseEntity<Map<String, Object>> createPaymentOrder(@RequestBody Payment payment) {
@@ -63,47 +90,38 @@ public class PaymentController {
         }
     }
 
-    // Confirm UPI/GPay payment (manual confirmation after QR scan)
+    // Confirm UPI/GPay payment (manual confirmation after QR scan); retries with the same Idempotency-Key are replayed
     @PostMapping("/confirm")
-    public ResponseEntity<Map<String, Object>> confirmPayment(@RequestBody Map<String, Object> paymentData) {
-        try {
-            String orderId = (String) paymentData.get("orderId");
-            String patientId = (String) paymentData.get("patientId");
-            String patientName = (String) paymentData.get("patientName");
-            Double amount = Double.valueOf(paymentData.get("amount").toString());
-            String paymentMethod = (String) paymentData.get("paymentMethod");
-            String paymentStatus = (String) paymentData.get("paymentStatus");
-            List<Map<String, Object>> items = (List<Map<String, Object>>) paymentData.get("items");
+    public ResponseEntity<?> confirmPayment(@Valid @RequestBody ConfirmPaymentRequest request,
+                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("payments.confirm", idempotencyKey, request, () -> doConfirmPayment(request));
+    }
 
+    private ResponseEntity<Map<String, Object>> doConfirmPayment(ConfirmPaymentRequest request) {
+        try {
             // Create payment record
-            Payment payment = new Payment(patientId, "GPAY_UPI", amount, "Payment via " + paymentMethod);
-            payment.setPaymentMethod(paymentMethod);
-            payment.setStatus(paymentStatus);
-            payment.setRazorpayOrderId(orderId); // Store order ID for reference
+            Payment payment = new Payment(request.patientId(), "GPAY_UPI", request.amount(), "Payment via " + request.paymentMethod());
+            payment.setPaymentMethod(request.paymentMethod());
+            payment.setPaymentStatus(request.paymentStatus());
+            payment.setOrderId(request.orderId()); // Store order ID for reference
+            // The web client pays for the medicine order it just placed; this is what commits its reserved stock
+            payment.setMedicineOrderId(request.orderId());
 
             // Add items if provided
-            if (items != null && !items.isEmpty()) {
-                List<Payment.PaymentItem> paymentItems = items.stream()
-                    .map(item -> new Payment.PaymentItem(
-                        (String) item.get("name"),
-                        item.get("description") != null ? (String) item.get("description") : "",
-                        Double.valueOf(item.get("price").toString()),
-                        Integer.valueOf(item.get("quantity").toString())
-                    ))
-                    .toList();
-                payment.setItems(paymentItems);
+            if (request.items() != null && !request.items().isEmpty()) {
+                payment.setItems(toPaymentItems(request.items()));
             }
 
             // Save payment
             Payment savedPayment = paymentService.savePayment(payment);
 
-            return ResponseEntity.ok(Map.of(
-                "success", true,
-                "message", "Payment confirmed successfully",
-                "payment", savedPayment,
-                "orderId", orderId,
-                "timestamp", savedPayment.getCreatedAt()
-            ));
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Payment confirmed successfully");
+            response.put("payment", savedPayment);
+            response.put("orderId", request.orderId());
+            response.put("timestamp", savedPayment.getCreatedAt());
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                 "success", false,
@@ -123,6 +141,20 @@ public class PaymentController {
         }
     }
 
+    // Patient payments streamed as NDJSON (Accept: application/x-ndjson)
+    @GetMapping(value = "/patient/{patientId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPatientPayments(@PathVariable String patientId) {
+        Query query = new Query(Criteria.where("patientId").is(patientId))
+            .with(Sort.by(Sort.Direction.DESC, "createdAt"));
+        return ndjsonStreamingService.stream(query, Payment.class);
+    }
+
+    // All payments as NDJSON, for exports
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPayments() {
+        return ndjsonStreamingService.stream(Payment.class);
+    }
+
     // Get payment by ID
     @GetMapping("/{paymentId}")
     public ResponseEntity<Payment> getPaymentById(@PathVariable String paymentId) {
@@ -156,6 +188,50 @@ public class PaymentController {
         }
     }
 
+    // Revenue from successful payments created in a date range (admin only)
+    // GET /api/payments/revenue?from=2024-01-01T00:00:00&to=2024-01-31T23:59:59
+    @GetMapping("/revenue")
+    public ResponseEntity<Map<String, Object>> getRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        PaymentRepositoryCustom.RevenueTotal revenue = paymentService.getRevenueBetween(from, to);
+        return ResponseEntity.ok(Map.of(
+            "from", from,
+            "to", to,
+            "totalRevenue", revenue.revenue(),
+            "successfulPayments", revenue.payments()
+        ));
+    }
+
+    /**
+     * Revenue time series from the pre-aggregated rollups
+     * GET /api/payments/revenue/series?from=<ISO instant>&to=<ISO instant>&granularity=HOUR|DAY|MONTH
+     *     &paymentType=..&doctorId=..&split=true   (split breaks each bucket down by type and doctor)
+     */
+    @GetMapping("/revenue/series")
+    public ResponseEntity<?> getRevenueSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "DAY") String granularity,
+            @RequestParam(required = false) String paymentType,
+            @RequestParam(required = false) String doctorId,
+            @RequestParam(defaultValue = "false") boolean split) {
+        if (!List.of(RevenueRollupService.HOUR, RevenueRollupService.DAY, RevenueRollupService.MONTH).contains(granularity)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "granularity must be HOUR, DAY or MONTH"));
+        }
+        return ResponseEntity.ok(revenueRollupService.series(from, to, granularity, paymentType, doctorId, split));
+    }
+
+    // Rollup total for any range (hour precision): GET /api/payments/revenue/total?from=..&to=..&paymentType=..&doctorId=..
+    @GetMapping("/revenue/total")
+    public ResponseEntity<Map<String, Object>> getRevenueTotal(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String paymentType,
+            @RequestParam(required = false) String doctorId) {
+        return ResponseEntity.ok(revenueRollupService.total(from, to, paymentType, doctorId));
+    }
+
     // Demo payment methods
     @GetMapping("/demo-methods")
     public ResponseEntity<Map<String, Object>> getDemoPaymentMethods() {
@@ -187,21 +263,16 @@ public class PaymentController {
 
     // Process consultation payment
     @PostMapping("/consultation")
-    public ResponseEntity<Map<String, Object>> createConsultationPayment(@RequestBody Map<String, Object> paymentRequest) {
+    public ResponseEntity<Map<String, Object>> createConsultationPayment(@Valid @RequestBody ConsultationPaymentRequest request) {
         try {
-            String patientId = (String) paymentRequest.get("patientId");
-            String doctorId = (String) paymentRequest.get("doctorId");
-            Double amount = Double.valueOf(paymentRequest.get("amount").toString());
-            String description = (String) paymentRequest.get("description");
-
-            Payment payment = new Payment(patientId, "CONSULTATION", amount, description);
-            payment.setDoctorId(doctorId);
+            Payment payment = new Payment(request.patientId(), "CONSULTATION", request.amount(), request.description());
+            payment.setDoctorId(request.doctorId());
 
             // Add consultation item
             Payment.PaymentItem consultationItem = new Payment.PaymentItem(
                 "Doctor Consultation", 
-                "Consultation with " + paymentRequest.get("doctorName"), 
-                amount, 
+                "Consultation with " + request.doctorName(), 
+                request.amount(), 
                 1
             );
             payment.setItems(List.of(consultationItem));
@@ -215,27 +286,13 @@ public class PaymentController {
 
     // Process medicine payment
     @PostMapping("/medicine")
-    public ResponseEntity<Map<String, Object>> createMedicinePayment(@RequestBody Map<String, Object> paymentRequest) {
+    public ResponseEntity<Map<String, Object>> createMedicinePayment(@Valid @RequestBody MedicinePaymentRequest request) {
         try {
-            String patientId = (String) paymentRequest.get("patientId");
-            String orderId = (String) paymentRequest.get("orderId");
-            Double amount = Double.valueOf(paymentRequest.get("amount").toString());
-            String description = (String) paymentRequest.get("description");
-            List<Map<String, Object>> items = (List<Map<String, Object>>) paymentRequest.get("items");
-
-            Payment payment = new Payment(patientId, "MEDICINE", amount, description);
-            payment.setMedicineOrderId(orderId);
+            Payment payment = new Payment(request.patientId(), "MEDICINE", request.amount(), request.description());
+            payment.setMedicineOrderId(request.orderId());
 
             // Add medicine items
-            List<Payment.PaymentItem> paymentItems = items.stream()
-                .map(item -> new Payment.PaymentItem(
-                    (String) item.get("name"),
-                    (String) item.get("description"),
-                    Double.valueOf(item.get("price").toString()),
-                    Integer.valueOf(item.get("quantity").toString())
-                ))
-                .toList();
-            payment.setItems(paymentItems);
+            payment.setItems(toPaymentItems(request.items()));
 
             Map<String, Object> orderDetails = paymentService.createOrder(payment);
             return ResponseEntity.ok(orderDetails);
@@ -243,4 +300,15 @@ public class PaymentController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    private List<Payment.PaymentItem> toPaymentItems(List<PaymentItemRequest> items) {
+        return items.stream()
+            .map(item -> new Payment.PaymentItem(
+                item.name(),
+                item.description() != null ? item.description() : "",
+                item.price(),
+                item.quantity()
+            ))
+            .toList();
+    }
+}
@@ -1,10 +1,17 @@
 package com.healthconnect.controller;
 
 import com.healthconnect.model.Wallet;
+import com.healthconnect.model.WalletLedgerEntry;
+import com.healthconnect.service.IdempotencyService;
+import com.healthconnect.service.NdjsonStreamingService;
 import com.healthconnect.service.WalletService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 import java.util.Map;
 
@@ -13,20 +20,53 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class WalletController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private NdjsonStreamingService ndjsonStreamingService;
+
     // Get wallet for doctor/pharmacy
     @GetMapping("/{ownerType}/{ownerId}")
     public ResponseEntity<Wallet> getWallet(@PathVariable String ownerType, @PathVariable String ownerId) {
         try {
             Wallet wallet = walletService.getOrCreateWallet(ownerId, ownerType.toUpperCase());
-            return ResponseEntity.ok(wallet);
+            return ResponseEntity.ok(walletService.withRecentTransactions(wallet));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Wallet ledger, newest first, one page at a time
+     * GET /api/wallets/{ownerType}/{ownerId}/transactions?limit=50
+     * When more entries exist, the response carries an X-Next-Cursor header; pass it back as "cursor" for the next page.
+     */
+    @GetMapping("/{ownerType}/{ownerId}/transactions")
+    public ResponseEntity<?> getWalletTransactions(
+            @PathVariable String ownerType,
+            @PathVariable String ownerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            Wallet wallet = walletService.getWallet(ownerId, ownerType.toUpperCase());
+            if (wallet == null) {
+                return ResponseEntity.ok(List.<WalletLedgerEntry>of());
+            }
+            WalletService.LedgerPage page = walletService.getLedgerPage(
+                wallet.getId(), cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(OrderController.NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.entries());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // Get wallet balance
     @GetMapping("/{ownerType}/{ownerId}/balance")
     public ResponseEntity<Map<String, Object>> getWalletBalance(@PathVariable String ownerType, @PathVariable String ownerId) {
@@ -54,6 +94,11 @@ public class WalletController {
         }
     }
 
+    @GetMapping(value = "/doctors", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllDoctorWallets() {
+        return ndjsonStreamingService.stream(new Query(Criteria.where("ownerType").is("DOCTOR")), Wallet.class);
+    }
+
     // Get all pharmacy wallets (admin only)
     @GetMapping("/pharmacies")
     public ResponseEntity<List<Wallet>> getAllPharmacyWallets() {
@@ -65,17 +110,23 @@ public class WalletController {
         }
     }
 
-    // Process withdrawal request
+    @GetMapping(value = "/pharmacies", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPharmacyWallets() {
+        return ndjsonStreamingService.stream(new Query(Criteria.where("ownerType").is("PHARMACY")), Wallet.class);
+    }
+
+    // Process withdrawal request; a retry with the same Idempotency-Key never debits twice
     @PostMapping("/{ownerType}/{ownerId}/withdraw")
     public ResponseEntity<Map<String, Object>> processWithdrawal(
             @PathVariable String ownerType,
             @PathVariable String ownerId,
-            @RequestBody Map<String, Object> withdrawalRequest) {
+            @RequestBody Map<String, Object> withdrawalRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         try {
             Double amount = Double.valueOf(withdrawalRequest.get("amount").toString());
             String bankDetails = (String) withdrawalRequest.get("bankDetails");
 
-            boolean success = walletService.processWithdrawal(ownerId, ownerType.toUpperCase(), amount, bankDetails);
+            boolean success = walletService.processWithdrawal(ownerId, ownerType.toUpperCase(), amount, bankDetails, idempotencyKey);
 
             if (success) {
                 return ResponseEntity.ok(Map.of(
@@ -137,7 +188,7 @@ public class WalletController {
             Wallet wallet = walletService.getWallet(doctorId, "DOCTOR");
             if (wallet != null) {
                 // Calculate total earnings and transaction count
-                long totalTransactions = wallet.getTransactions() != null ? wallet.getTransactions().size() : 0;
+                long totalTransactions = wallet.getTransactionCount() != null ? wallet.getTransactionCount() : 0;
                 double totalEarnings = wallet.getBalance();
 
                 return ResponseEntity.ok(Map.of(
@@ -170,7 +221,7 @@ public class WalletController {
         try {
             Wallet wallet = walletService.getWallet(pharmacyId, "PHARMACY");
             if (wallet != null) {
-                long totalTransactions = wallet.getTransactions() != null ? wallet.getTransactions().size() : 0;
+                long totalTransactions = wallet.getTransactionCount() != null ? wallet.getTransactionCount() : 0;
                 double totalEarnings = wallet.getBalance();
 
                 return ResponseEntity.ok(Map.of(
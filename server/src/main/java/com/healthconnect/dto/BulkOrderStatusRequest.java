@@ -0,0 +1,18 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+
+import java.util.List;
+
+// Body of PATCH /api/orders/status: either orderIds or filter, plus the target status
+public record BulkOrderStatusRequest(
+        List<@NotBlank String> orderIds,
+        @Valid Filter filter,
+        @NotBlank String status) {
+
+    public record Filter(
+            @NotBlank String status,
+            String patientId) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+// Body of POST /api/payments/confirm (manual UPI/GPay confirmation)
+public record ConfirmPaymentRequest(
+        String orderId,
+        String patientId, // null for guest checkout
+        String patientName,
+        @NotNull @Positive Double amount,
+        String paymentMethod,
+        String paymentStatus,
+        List<@Valid PaymentItemRequest> items) {
+}
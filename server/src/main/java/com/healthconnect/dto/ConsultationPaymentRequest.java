@@ -0,0 +1,14 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+// Body of POST /api/payments/consultation
+public record ConsultationPaymentRequest(
+        @NotBlank String patientId,
+        @NotBlank String doctorId,
+        String doctorName,
+        @NotNull @Positive Double amount,
+        String description) {
+}
@@ -0,0 +1,18 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+// Body of POST /api/payments/medicine
+public record MedicinePaymentRequest(
+        @NotBlank String patientId,
+        String orderId,
+        @NotNull @Positive Double amount,
+        String description,
+        @NotEmpty List<@Valid PaymentItemRequest> items) {
+}
@@ -0,0 +1,13 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+public record PaymentItemRequest(
+        @NotBlank String name,
+        String description,
+        @NotNull @PositiveOrZero Double price,
+        @NotNull @Positive Integer quantity) {
+}
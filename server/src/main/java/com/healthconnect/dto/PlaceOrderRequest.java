@@ -0,0 +1,34 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.List;
+
+// Body of POST /api/orders/place
+public record PlaceOrderRequest(
+        @NotBlank String patientId,
+        String patientName,
+        String patientAddress,
+        String patientPhone,
+        @NotEmpty List<@Valid Item> medicines,
+        @PositiveOrZero Double totalPrice,
+        @PositiveOrZero Double totalAmount) {
+
+    public record Item(
+            @NotBlank String medicineId,
+            String medicineName,
+            String name,
+            @NotNull @Positive Integer quantity,
+            @PositiveOrZero Double price) {
+    }
+
+    // Total the client expects to pay; checked against the server-side price
+    public Double clientTotal() {
+        return totalPrice != null ? totalPrice : totalAmount;
+    }
+}
@@ -1,5 +1,7 @@
 package com.healthconnect.model;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -26,4 +28,5 @@ public class Appointment {
     private String paymentStatus; // UNPAID, PAID
     private String paymentMethod; // CASH, CARD, UPI, NET_BANKING
     private String paymentTime; // BEFORE, AFTER
+    private List<StatusChange> statusHistory;
 }
@@ -0,0 +1,29 @@
+package com.healthconnect.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// PENDING -> CONFIRMED -> COMPLETED, cancellable until completed
+public enum AppointmentStatus {
+    PENDING, CONFIRMED, COMPLETED, CANCELLED;
+
+    // Stored status values from which a change to this status is allowed (null = never set, treated as PENDING)
+    public List<String> allowedFrom() {
+        return switch (this) {
+            case PENDING -> List.of();
+            case CONFIRMED -> withInitial(PENDING);
+            case COMPLETED -> List.of(CONFIRMED.name());
+            case CANCELLED -> withInitial(PENDING, CONFIRMED);
+        };
+    }
+
+    private static List<String> withInitial(AppointmentStatus... statuses) {
+        List<String> values = new ArrayList<>();
+        for (AppointmentStatus status : statuses) {
+            values.add(status.name());
+        }
+        values.add(null);
+        return Collections.unmodifiableList(values);
+    }
+}
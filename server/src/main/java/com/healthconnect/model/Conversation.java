@@ -0,0 +1,31 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Inbox entry, maintained incrementally on every sent message
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "conversations")
+// _id breaks ties between conversations last active in the same millisecond, so inbox pages never skip one
+@CompoundIndex(name = "participant_activity_id", def = "{'participants': 1, 'lastMessageAt': -1, '_id': -1}")
+public class Conversation {
+    @Id
+    private String id; // same as Message.conversationKey
+    private List<String> participants;
+    private String lastMessage; // preview, truncated
+    private String lastSenderId;
+    private String lastSenderName;
+    private Instant lastMessageAt;
+    private Map<String, Integer> unreadCounts; // userId -> unread messages for that user
+}
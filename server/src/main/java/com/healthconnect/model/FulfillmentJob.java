@@ -0,0 +1,38 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Queue entry driving one order through the fulfillment stages; claimed by a node for leaseUntil
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "fulfillment_jobs")
+@CompoundIndexes({
+    @CompoundIndex(name = "status_nextRunAt", def = "{'status': 1, 'nextRunAt': 1}"),
+    @CompoundIndex(name = "status_leaseUntil", def = "{'status': 1, 'leaseUntil': 1}")
+})
+public class FulfillmentJob {
+    @Id
+    private String id; // order ID
+    private String stage; // RESERVE_STOCK, LINK_PAYMENT, ASSIGN_PHARMACY, NOTIFY, DONE
+    private String status; // PENDING, RUNNING, DONE, FAILED
+    private Integer attempts;
+    private String leaseOwner; // node holding the lease, for diagnostics
+    private String leaseToken; // fresh per claim; writes by an earlier holder of the job no longer match it
+    private Instant leaseUntil;
+    private Instant nextRunAt;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private String lastError;
+    private List<String> notifications; // keys of notifications already sent for this job
+}
@@ -0,0 +1,30 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one Idempotency-Key; Mongo's TTL monitor deletes it once expiresAt passes
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String id; // scope + ":" + client key
+    private String fingerprint; // SHA-256 of the request body
+    private String status; // IN_FLIGHT or COMPLETED
+    private Integer responseStatus;
+    private String responseBody; // JSON as first returned
+    private Instant createdAt;
+    @Indexed(name = "expires_at_ttl", expireAfterSeconds = 0)
+    private Instant expiresAt;
+    private Instant claimedUntil; // IN_FLIGHT lease; past it, another request may take the key over
+    private String claimToken; // identifies the current claimant, so a superseded one cannot complete
+}
@@ -0,0 +1,61 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Running debit/credit totals of one ledger account, kept up to date as journals are posted
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "ledger_accounts")
+public class LedgerAccount {
+    @Id
+    private String id; // "<ownerType>:<ownerId>", e.g. "DOCTOR:doc_1", "PLATFORM:platform"
+    private String ownerType;
+    private String ownerId;
+    @JsonIgnore
+    private long debitPaise;
+    @JsonIgnore
+    private long creditPaise;
+    private long postings;
+    @JsonIgnore
+    private List<PendingJournal> pendingJournals; // journals being applied to the totals, one claim per journal
+    private Instant updatedAt;
+
+    public static String accountId(String ownerType, String ownerId) {
+        return ownerType + ":" + ownerId;
+    }
+
+    public double getDebits() {
+        return Money.toRupees(debitPaise);
+    }
+
+    public double getCredits() {
+        return Money.toRupees(creditPaise);
+    }
+
+    // Credit-normal: what the account holder is owed (negative for patients, who pay)
+    public double getBalance() {
+        return Money.toRupees(creditPaise - debitPaise);
+    }
+
+    // One posting attempt's claim on a journal; the totals only move for the current token, once
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PendingJournal {
+        private String journalId;
+        private String token; // the attempt holding the claim; removed once applied
+        private Instant claimedAt;
+        private boolean applied; // set in the same write as the $inc
+    }
+}
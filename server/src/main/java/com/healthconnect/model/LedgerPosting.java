@@ -0,0 +1,48 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of a double-entry journal; the lines of a journal have equal debit and credit totals
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "ledger_postings")
+@CompoundIndexes({
+    // Re-posting a journal hits this index instead of duplicating lines; also the trial balance scan order
+    @CompoundIndex(name = "journal_line", def = "{'journalId': 1, 'line': 1}", unique = true),
+    @CompoundIndex(name = "account_postedAt", def = "{'accountId': 1, 'postedAt': -1}")
+})
+public class LedgerPosting {
+    @Id
+    private String id;
+    private String journalId; // e.g. "payment:<payment id>"
+    private int line;
+    private String accountId; // "<ownerType>:<ownerId>", see LedgerAccount
+    private Side side;
+    @JsonIgnore
+    private long amountPaise; // always positive
+    private String paymentId;
+    private String description;
+    private Instant postedAt;
+    @JsonIgnore
+    private Boolean applied; // false until the account totals include this line; null on lines from before
+
+    public double getAmount() {
+        return Money.toRupees(amountPaise);
+    }
+
+    public enum Side {
+        DEBIT, CREDIT
+    }
+}
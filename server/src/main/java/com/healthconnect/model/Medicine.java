@@ -1,8 +1,13 @@
 package com.healthconnect.model;
 
+import java.util.List;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,4 +24,7 @@ public class Medicine {
     private Double price;
     private String category;
     private Integer stock;
+    @JsonIgnore
+    @Indexed(sparse = true)
+    private List<String> holds; // order IDs currently holding reserved stock of this medicine
 }
@@ -1,10 +1,16 @@
 package com.healthconnect.model;
 
+import java.time.Instant;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.healthconnect.config.LenientInstantDeserializer;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,6 +19,12 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "orders")
+// Listing sorts on (orderDate, _id) descending; the trailing _id keeps that sort inside the index
+@CompoundIndexes({
+    @CompoundIndex(name = "status_orderDate", def = "{'status': 1, 'orderDate': -1, '_id': -1}"),
+    @CompoundIndex(name = "patient_orderDate", def = "{'patientId': 1, 'orderDate': -1, '_id': -1}"),
+    @CompoundIndex(name = "orderDate", def = "{'orderDate': -1, '_id': -1}")
+})
 public class MedicineOrder {
     @Id
     private String id;
@@ -23,6 +35,11 @@ public class MedicineOrder {
     private List<OrderItem> items;
     private Double totalAmount;
     private String status; // PLACED, PROCESSING, SHIPPED, DELIVERED
-    private String orderDate;
-    private String deliveryDate;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant orderDate;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant deliveryDate;
+    private List<StatusChange> statusHistory;
+    private String pharmacyId; // set by fulfillment
+    private String paymentId; // set by fulfillment once the order is paid
 }
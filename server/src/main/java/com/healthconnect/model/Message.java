@@ -1,6 +1,10 @@
 package com.healthconnect.model;
 
+import java.time.Instant;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -11,6 +15,12 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "messages")
+@CompoundIndexes({
+    // _id breaks ties between messages sharing a millisecond, so keyset pages never skip one
+    @CompoundIndex(name = "conversation_timestamp_id", def = "{'conversationKey': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "sender_timestamp_id", def = "{'senderId': 1, 'timestamp': 1, '_id': 1}"),
+    @CompoundIndex(name = "receiver_timestamp_id", def = "{'receiverId': 1, 'timestamp': 1, '_id': 1}")
+})
 public class Message {
     @Id
     private String id;
@@ -19,5 +29,13 @@ public class Message {
     private String senderName;
     private String senderType; // DOCTOR or PATIENT
     private String message;
-    private String timestamp;
+    private Instant timestamp;
+    private String conversationKey; // min(senderId, receiverId) + ":" + max(senderId, receiverId)
+
+    // Same key regardless of which participant sent the message
+    public static String conversationKey(String userId1, String userId2) {
+        return userId1.compareTo(userId2) <= 0
+            ? userId1 + ":" + userId2
+            : userId2 + ":" + userId1;
+    }
 }
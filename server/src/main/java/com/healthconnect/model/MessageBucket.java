@@ -0,0 +1,41 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Up to messages.bucket.max-size messages of one conversation on one (UTC) day.
+// seq numbers the buckets of a day; the unique index lets only one writer open the next one
+// (buckets written before seq existed are left out of it).
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "message_buckets")
+@CompoundIndexes({
+    @CompoundIndex(name = "conversation_day_count", def = "{'conversationKey': 1, 'day': 1, 'count': 1}"),
+    @CompoundIndex(name = "conversation_day_seq", def = "{'conversationKey': 1, 'day': 1, 'seq': 1}",
+        unique = true, partialFilter = "{'seq': {'$exists': true}}"),
+    @CompoundIndex(name = "message_id", def = "{'messages._id': 1}"),
+    @CompoundIndex(name = "conversation_last", def = "{'conversationKey': 1, 'lastMessageAt': -1}"),
+    @CompoundIndex(name = "participant_last", def = "{'participants': 1, 'lastMessageAt': 1}")
+})
+public class MessageBucket {
+    @Id
+    private String id;
+    private String conversationKey;
+    private String day; // yyyy-MM-dd
+    private Integer seq;
+    private List<String> participants;
+    private Integer count;
+    private Instant firstMessageAt;
+    private Instant lastMessageAt;
+    private List<Message> messages;
+}
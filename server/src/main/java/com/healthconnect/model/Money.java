@@ -0,0 +1,61 @@
+package com.healthconnect.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a primitive long count of paise.
+ *
+ * Amounts are stored and added up in paise; rupee doubles only appear at the JSON
+ * and client edges. Basis-point shares round half up, and splits give the remainder
+ * to the payee, so the parts always add back to the original amount.
+ */
+public final class Money {
+
+    public static final int BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    public static long ofRupees(double rupees) {
+        return BigDecimal.valueOf(rupees).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static double toRupees(long paise) {
+        return paise / 100.0;
+    }
+
+    // paise * bps / 10000, rounded half away from zero
+    public static long basisPoints(long paise, int bps) {
+        long product = Math.multiplyExact(paise, (long) bps);
+        long share = product / BASIS_POINTS;
+        long remainder = Math.abs(product % BASIS_POINTS);
+        if (remainder * 2 >= BASIS_POINTS) {
+            share += Long.signum(product);
+        }
+        return share;
+    }
+
+    // Commission taken at the given rate; the payee gets amount - commission
+    public static Split split(long paise, int commissionBps) {
+        long commission = basisPoints(paise, commissionBps);
+        return new Split(paise - commission, commission);
+    }
+
+    public static long sum(long[] paise) {
+        long total = 0;
+        for (long amount : paise) {
+            total = Math.addExact(total, amount);
+        }
+        return total;
+    }
+
+    public static void checkBasisPoints(String name, int bps) {
+        if (bps < 0 || bps > BASIS_POINTS) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + BASIS_POINTS + " basis points");
+        }
+    }
+
+    public record Split(long payeePaise, long commissionPaise) {
+    }
+}
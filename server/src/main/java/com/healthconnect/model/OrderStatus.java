@@ -0,0 +1,30 @@
+package com.healthconnect.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// PLACED -> PROCESSING -> SHIPPED -> DELIVERED, cancellable until shipped
+public enum OrderStatus {
+    PLACED, PROCESSING, SHIPPED, DELIVERED, CANCELLED;
+
+    // Stored status values from which a change to this status is allowed (null = never set, treated as PLACED)
+    public List<String> allowedFrom() {
+        return switch (this) {
+            case PLACED -> List.of();
+            case PROCESSING -> withInitial(PLACED);
+            case SHIPPED -> List.of(PROCESSING.name());
+            case DELIVERED -> List.of(SHIPPED.name());
+            case CANCELLED -> withInitial(PLACED, PROCESSING);
+        };
+    }
+
+    private static List<String> withInitial(OrderStatus... statuses) {
+        List<String> values = new ArrayList<>();
+        for (OrderStatus status : statuses) {
+            values.add(status.name());
+        }
+        values.add(null);
+        return Collections.unmodifiableList(values);
+    }
+}
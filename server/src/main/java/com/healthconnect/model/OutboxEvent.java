@@ -0,0 +1,28 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Work owed after a document change, stored in that document so both are written together
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    private String type; // e.g. DISTRIBUTE_PAYMENT
+    private String status; // PENDING, PROCESSING, DONE, FAILED
+    private Integer attempts;
+    private Instant nextAttemptAt;
+    private String claimToken;
+    private Instant leaseUntil;
+    private String lastError;
+    private Instant createdAt;
+    private Instant processedAt;
+
+    public static OutboxEvent pending(String type) {
+        Instant now = Instant.now();
+        return new OutboxEvent(type, "PENDING", 0, now, null, null, null, now, null);
+    }
+}
@@ -1,31 +1,54 @@
 package com.healthconnect.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "payments")
+@CompoundIndexes({
+    @CompoundIndex(name = "status_createdAt", def = "{'paymentStatus': 1, 'createdAt': -1}"),
+    @CompoundIndex(name = "type_createdAt", def = "{'paymentType': 1, 'createdAt': -1}"),
+    @CompoundIndex(name = "patient_createdAt", def = "{'patientId': 1, 'createdAt': -1}"),
+    @CompoundIndex(name = "outbox_due", def = "{'outbox.status': 1, 'outbox.nextAttemptAt': 1}", sparse = true)
+})
 public class Payment {
     @Id
     private String id;
     private String patientId;
     private String paymentType; // "CONSULTATION", "MEDICINE"
+    @Indexed(sparse = true)
     private String orderId; // Razorpay order ID
     private String paymentId; // Razorpay payment ID
     private String paymentMethod; // "UPI", "CARD", "NETBANKING", "WALLET"
     private String paymentStatus; // "PENDING", "SUCCESS", "FAILED"
-    private Double amount;
+    private Long amountPaise;
     private String currency;
     private String description;
     private String doctorId; // for consultation payments
+    @Indexed(sparse = true)
     private String medicineOrderId; // for medicine payments
     private List<PaymentItem> items;
     private PaymentDetails paymentDetails;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    @Indexed(unique = true, sparse = true)
     private String invoiceNumber;
     private String invoiceUrl;
+    @JsonIgnore
+    private OutboxEvent outbox; // wallet distribution owed for this payment
+    @JsonIgnore
+    private String rollupMarker; // claim on counting the payment in revenue_rollups, set once
+    @JsonIgnore
+    @Indexed(sparse = true)
+    private Boolean rollupPending; // true from the claim until every bucket has been incremented
+    @JsonIgnore
+    private Instant rollupClaimedAt;
 
     // Constructors
     public Payment() {
@@ -39,7 +62,7 @@ public class Payment {
         this();
         this.patientId = patientId;
         this.paymentType = paymentType;
-        this.amount = amount;
+        setAmount(amount);
         this.description = description;
     }
 
@@ -68,8 +91,13 @@ public class Payment {
         this.updatedAt = LocalDateTime.now();
     }
 
-    public Double getAmount() { return amount; }
-    public void setAmount(Double amount) { this.amount = amount; }
+    // Rupees at the API edge; stored as paise
+    public Double getAmount() { return amountPaise != null ? Money.toRupees(amountPaise) : null; }
+    public void setAmount(Double amount) { this.amountPaise = amount != null ? Money.ofRupees(amount) : null; }
+
+    @JsonIgnore
+    public Long getAmountPaise() { return amountPaise; }
+    public void setAmountPaise(Long amountPaise) { this.amountPaise = amountPaise; }
 
     public String getCurrency() { return currency; }
     public void setCurrency(String currency) { this.currency = currency; }
@@ -101,6 +129,18 @@ public class Payment {
     public String getInvoiceUrl() { return invoiceUrl; }
     public void setInvoiceUrl(String invoiceUrl) { this.invoiceUrl = invoiceUrl; }
 
+    public OutboxEvent getOutbox() { return outbox; }
+    public void setOutbox(OutboxEvent outbox) { this.outbox = outbox; }
+
+    public String getRollupMarker() { return rollupMarker; }
+    public void setRollupMarker(String rollupMarker) { this.rollupMarker = rollupMarker; }
+
+    public Boolean getRollupPending() { return rollupPending; }
+    public void setRollupPending(Boolean rollupPending) { this.rollupPending = rollupPending; }
+
+    public Instant getRollupClaimedAt() { return rollupClaimedAt; }
+    public void setRollupClaimedAt(Instant rollupClaimedAt) { this.rollupClaimedAt = rollupClaimedAt; }
+
     // Inner classes
     public static class PaymentItem {
         private String name;
@@ -0,0 +1,31 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Successful-payment revenue for one hour or day, one payment type and one doctor
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "revenue_rollups")
+@CompoundIndex(name = "granularity_bucketStart", def = "{'granularity': 1, 'bucketStart': 1}")
+public class RevenueRollup {
+    @Id
+    private String id; // granularity|bucketStart epoch millis|paymentType|doctorId
+    private String granularity; // HOUR or DAY
+    private Instant bucketStart; // start of the hour/day in revenue.rollup.zone
+    private String paymentType;
+    private String doctorId; // "-" when the payment has no doctor
+    private Long revenuePaise;
+    private Long payments;
+    private Instant updatedAt;
+    private List<String> markers; // rollup claims applied here whose payments are still pending
+}
@@ -0,0 +1,21 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One entry of an order/appointment status history
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusChange {
+    private String status;
+    private Instant changedAt;
+    private String transitionId; // shared by every document changed in one bulk update
+
+    public StatusChange(String status, Instant changedAt) {
+        this(status, changedAt, null);
+    }
+}
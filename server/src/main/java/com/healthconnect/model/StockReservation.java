@@ -0,0 +1,36 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Stock held for one order until it is paid/progressed (COMMITTED) or abandoned (RELEASED)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_reservations")
+@CompoundIndex(name = "status_expiry", def = "{'status': 1, 'expiresAt': 1}")
+public class StockReservation {
+    @Id
+    private String id; // order ID
+    private List<ReservedItem> items;
+    private String status; // HELD, COMMITTED, RELEASED
+    private Instant createdAt;
+    private Instant expiresAt;
+    private String transitionId; // set by commitAll/releaseAll to find which reservations that batch changed
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReservedItem {
+        private String medicineId;
+        private Integer quantity;
+    }
+}
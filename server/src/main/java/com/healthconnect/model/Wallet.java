@@ -1,29 +1,44 @@
 package com.healthconnect.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 
 @Document(collection = "wallets")
+// One wallet per owner; concurrent getOrCreateWallet calls race on this index instead of creating duplicates
+@CompoundIndexes({
+    @CompoundIndex(name = "owner", def = "{'ownerId': 1, 'ownerType': 1}", unique = true),
+    @CompoundIndex(name = "ownerType_status", def = "{'ownerType': 1, 'status': 1}")
+})
 public class Wallet {
     @Id
     private String id;
     private String ownerId; // doctorId or pharmacyId
     private String ownerType; // "DOCTOR", "PHARMACY"
-    private Double balance;
+    private long balancePaise;
     private String currency;
-    private List<Transaction> transactions;
+    @Transient
+    private List<Transaction> transactions; // most recent wallet_ledger entries, filled in for API responses
+    private Long transactionCount;
+    @JsonIgnore
+    private List<PendingEntry> pendingEntries; // ledger entries being applied to the balance, one claim per dedup key
     private WalletStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     // Constructors
     public Wallet() {
-        this.balance = 0.0;
+        this.balancePaise = 0;
         this.currency = "INR";
         this.transactions = new ArrayList<>();
+        this.transactionCount = 0L;
         this.status = WalletStatus.ACTIVE;
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
@@ -36,24 +51,8 @@ public class Wallet {
     }
 
     // Methods
-    public void addTransaction(Transaction transaction) {
-        if (this.transactions == null) {
-            this.transactions = new ArrayList<>();
-        }
-        this.transactions.add(transaction);
-        
-        // Update balance based on transaction type
-        if (transaction.getType() == TransactionType.CREDIT) {
-            this.balance += transaction.getAmount();
-        } else if (transaction.getType() == TransactionType.DEBIT) {
-            this.balance -= transaction.getAmount();
-        }
-        
-        this.updatedAt = LocalDateTime.now();
-    }
-
     public boolean hasSufficientBalance(Double amount) {
-        return this.balance >= amount;
+        return this.balancePaise >= Money.ofRupees(amount);
     }
 
     // Getters and Setters
@@ -66,18 +65,29 @@ public class Wallet {
     public String getOwnerType() { return ownerType; }
     public void setOwnerType(String ownerType) { this.ownerType = ownerType; }
 
-    public Double getBalance() { return balance; }
+    // Rupees, as the API has always reported it; stored as paise
+    public Double getBalance() { return Money.toRupees(balancePaise); }
     public void setBalance(Double balance) { 
-        this.balance = balance;
+        this.balancePaise = Money.ofRupees(balance);
         this.updatedAt = LocalDateTime.now();
     }
 
+    @JsonIgnore
+    public long getBalancePaise() { return balancePaise; }
+    public void setBalancePaise(long balancePaise) { this.balancePaise = balancePaise; }
+
     public String getCurrency() { return currency; }
     public void setCurrency(String currency) { this.currency = currency; }
 
     public List<Transaction> getTransactions() { return transactions; }
     public void setTransactions(List<Transaction> transactions) { this.transactions = transactions; }
 
+    public Long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(Long transactionCount) { this.transactionCount = transactionCount; }
+
+    public List<PendingEntry> getPendingEntries() { return pendingEntries; }
+    public void setPendingEntries(List<PendingEntry> pendingEntries) { this.pendingEntries = pendingEntries; }
+
     public WalletStatus getStatus() { return status; }
     public void setStatus(WalletStatus status) { 
         this.status = status;
@@ -92,16 +102,16 @@ public class Wallet {
 
     // Inner classes
     public static class Transaction {
-        private String id;
+        private String id; // txn_... from IdGenerator, copied from the ledger entry
         private String paymentId;
         private TransactionType type;
         private Double amount;
         private String description;
         private LocalDateTime createdAt;
         private String relatedEntityId; // patientId, orderId, etc.
+        private String dedupKey; // e.g. "payment:<payment id>"; a wallet never applies the same key twice
 
         public Transaction() {
-            this.id = "txn_" + System.currentTimeMillis();
             this.createdAt = LocalDateTime.now();
         }
 
@@ -134,6 +144,39 @@ public class Wallet {
 
         public String getRelatedEntityId() { return relatedEntityId; }
         public void setRelatedEntityId(String relatedEntityId) { this.relatedEntityId = relatedEntityId; }
+
+        public String getDedupKey() { return dedupKey; }
+        public void setDedupKey(String dedupKey) { this.dedupKey = dedupKey; }
+    }
+
+    // One attempt's claim on a ledger entry; the balance only moves for the current token, once
+    public static class PendingEntry {
+        private String key; // the entry's dedupKey
+        private String token; // the attempt holding the claim; removed once applied
+        private Instant claimedAt;
+        private boolean applied; // set in the same write as the balance change
+
+        public PendingEntry() {
+        }
+
+        public PendingEntry(String key, String token, Instant claimedAt, boolean applied) {
+            this.key = key;
+            this.token = token;
+            this.claimedAt = claimedAt;
+            this.applied = applied;
+        }
+
+        public String getKey() { return key; }
+        public void setKey(String key) { this.key = key; }
+
+        public String getToken() { return token; }
+        public void setToken(String token) { this.token = token; }
+
+        public Instant getClaimedAt() { return claimedAt; }
+        public void setClaimedAt(Instant claimedAt) { this.claimedAt = claimedAt; }
+
+        public boolean isApplied() { return applied; }
+        public void setApplied(boolean applied) { this.applied = applied; }
     }
 
     // Enums
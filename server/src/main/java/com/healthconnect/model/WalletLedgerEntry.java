@@ -0,0 +1,52 @@
+package com.healthconnect.model;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One append-only wallet movement; the wallet document only keeps the running balance
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "wallet_ledger")
+@CompoundIndexes({
+    @CompoundIndex(name = "walletId_createdAt", def = "{'walletId': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "walletId_dedupKey", def = "{'walletId': 1, 'dedupKey': 1}", unique = true, sparse = true)
+})
+public class WalletLedgerEntry {
+    @Id
+    private String id;
+    private String walletId;
+    private String ownerId;
+    private String ownerType;
+    private String transactionId; // txn_...
+    private String paymentId; // Razorpay payment ID or withdrawal reference
+    private String dedupKey; // e.g. "payment:<payment id>"
+    private Wallet.TransactionType type;
+    @JsonIgnore
+    private long amountPaise;
+    @JsonIgnore
+    private Long balanceAfterPaise; // null when unknown (migrated or recovered entries)
+    private String description;
+    private String relatedEntityId;
+    private Instant createdAt;
+    @JsonIgnore
+    private Boolean applied; // false until the wallet balance is known to include it; null on entries that never needed it
+
+    // Rupees for API responses
+    public double getAmount() {
+        return Money.toRupees(amountPaise);
+    }
+
+    public Double getBalanceAfter() {
+        return balanceAfterPaise != null ? Money.toRupees(balanceAfterPaise) : null;
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface AppointmentRepository extends MongoRepository<Appointment, String> {
+public interface AppointmentRepository extends MongoRepository<Appointment, String>, AppointmentRepositoryCustom {
     List<Appointment> findByDoctorId(String doctorId);
     List<Appointment> findByPatientId(String patientId);
 }
@@ -0,0 +1,10 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Appointment;
+
+// Appointment edits that leave the status and its history alone
+public interface AppointmentRepositoryCustom {
+
+    // $set every field except status/statusHistory; returns the updated appointment, or null if it does not exist
+    Appointment updateEditableFields(String id, Appointment changes);
+}
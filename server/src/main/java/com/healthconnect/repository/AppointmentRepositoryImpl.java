@@ -0,0 +1,35 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Appointment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class AppointmentRepositoryImpl implements AppointmentRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Appointment updateEditableFields(String id, Appointment changes) {
+        // Status changes go through PATCH /{id}/status so they are checked and recorded in statusHistory
+        Update update = new Update()
+            .set("patientId", changes.getPatientId())
+            .set("doctorId", changes.getDoctorId())
+            .set("patientName", changes.getPatientName())
+            .set("doctorName", changes.getDoctorName())
+            .set("date", changes.getDate())
+            .set("time", changes.getTime())
+            .set("symptoms", changes.getSymptoms())
+            .set("consultationType", changes.getConsultationType())
+            .set("consultationFee", changes.getConsultationFee())
+            .set("paymentStatus", changes.getPaymentStatus())
+            .set("paymentMethod", changes.getPaymentMethod())
+            .set("paymentTime", changes.getPaymentTime());
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), update,
+            FindAndModifyOptions.options().returnNew(true), Appointment.class);
+    }
+}
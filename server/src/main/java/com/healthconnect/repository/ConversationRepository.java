@@ -0,0 +1,10 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Conversation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+// Inbox pages are keyset queries in ConversationService
+@Repository
+public interface ConversationRepository extends MongoRepository<Conversation, String> {
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface MedicineRepository extends MongoRepository<Medicine, String> {
+public interface MedicineRepository extends MongoRepository<Medicine, String>, MedicineRepositoryCustom {
     List<Medicine> findByCategory(String category);
     List<Medicine> findByNameContainingIgnoreCase(String name);
 }
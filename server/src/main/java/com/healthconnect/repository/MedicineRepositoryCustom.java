@@ -0,0 +1,10 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Medicine;
+
+// Catalog edits that leave server-managed fields (stock holds) alone
+public interface MedicineRepositoryCustom {
+
+    // $set the fields a catalog edit may change; returns the updated medicine, or null if it does not exist
+    Medicine updateEditableFields(String id, Medicine changes);
+}
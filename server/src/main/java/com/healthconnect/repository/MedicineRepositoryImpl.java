@@ -0,0 +1,28 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Medicine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class MedicineRepositoryImpl implements MedicineRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Medicine updateEditableFields(String id, Medicine changes) {
+        // A full save would drop holds (it is not part of the request body) and orphan every open reservation
+        Update update = new Update()
+            .set("name", changes.getName())
+            .set("description", changes.getDescription())
+            .set("price", changes.getPrice())
+            .set("category", changes.getCategory())
+            .set("stock", changes.getStock());
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), update,
+            FindAndModifyOptions.options().returnNew(true), Medicine.class);
+    }
+}
@@ -7,6 +7,6 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface MessageRepository extends MongoRepository<Message, String> {
+public interface MessageRepository extends MongoRepository<Message, String>, MessageRepositoryCustom {
     List<Message> findBySenderIdOrReceiverIdOrderByTimestampDesc(String senderId, String receiverId);
 }
@@ -0,0 +1,32 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Message;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Keyset conversation paging, and the bucketed storage path (message_buckets collection)
+public interface MessageRepositoryCustom {
+
+    // Newest-first page of a conversation older than (before, beforeId); both null for the newest page
+    List<Message> findConversationPage(String conversationKey, Instant before, String beforeId, int limit);
+
+    // $push the message into an open bucket for its conversation and day, starting the next bucket when all are full
+    void appendToBucket(Message message, int maxBucketSize);
+
+    // Newest-first page of a conversation read across buckets
+    List<Message> findBucketedConversation(String conversationKey, Instant before, String beforeId, int limit);
+
+    // Oldest-first messages sent to or by a user after (since, sinceId); sinceId null for "after since" only
+    List<Message> findParticipantSince(String userId, Instant since, String sinceId, int limit);
+
+    // Oldest-first messages sent to or by a user after (since, sinceId), read across buckets
+    List<Message> findBucketedSince(String userId, Instant since, String sinceId, int limit);
+
+    // Every bucketed message, read with a cursor; close the stream when done
+    Stream<Message> streamBucketed();
+
+    // Remove a message from whichever bucket holds it
+    void deleteFromBucket(String id);
+}
@@ -0,0 +1,209 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Message;
+import com.healthconnect.model.MessageBucket;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+    // Same order as the conversation index: timestamp, then id (ObjectId hex sorts like the ObjectId)
+    private static final Comparator<Message> NEWEST_FIRST =
+        Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId).reversed();
+
+    // Buckets hold up to a few hundred messages each, so fetch them a few at a time
+    private static final int STREAM_BATCH_SIZE = 10;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Message> findConversationPage(String conversationKey, Instant before, String beforeId, int limit) {
+        Criteria criteria = Criteria.where("conversationKey").is(conversationKey);
+        if (before != null) {
+            if (beforeId == null) {
+                criteria = criteria.and("timestamp").lt(before);
+            } else {
+                Object id = ObjectId.isValid(beforeId) ? new ObjectId(beforeId) : beforeId;
+                criteria = criteria.orOperator(
+                    Criteria.where("timestamp").lt(before),
+                    Criteria.where("timestamp").is(before).and("_id").lt(id));
+            }
+        }
+        Query query = new Query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "timestamp").and(Sort.by(Sort.Direction.DESC, "_id")))
+            .limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    @Override
+    public List<Message> findParticipantSince(String userId, Instant since, String sinceId, int limit) {
+        // One $or branch per side and cursor part, each served by the sender/receiver (timestamp, _id) index
+        List<Criteria> branches = new ArrayList<>();
+        for (String side : List.of("senderId", "receiverId")) {
+            branches.add(Criteria.where(side).is(userId).and("timestamp").gt(since));
+            if (sinceId != null) {
+                Object id = ObjectId.isValid(sinceId) ? new ObjectId(sinceId) : sinceId;
+                branches.add(Criteria.where(side).is(userId).and("timestamp").is(since).and("_id").gt(id));
+            }
+        }
+        Query query = new Query(new Criteria().orOperator(branches))
+            .with(Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "_id")))
+            .limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    @Override
+    public void appendToBucket(Message message, int maxBucketSize) {
+        Update update = appendUpdate(message);
+        while (true) {
+            if (mongoTemplate.updateFirst(openBucketQuery(message, maxBucketSize), update, MessageBucket.class)
+                    .getMatchedCount() > 0) {
+                return;
+            }
+            // Every bucket of the day is full: open the next one. Concurrent writers race for the same seq
+            // and the unique index lets one of them insert; the others retry and join that bucket
+            try {
+                mongoTemplate.upsert(nextBucketQuery(message, maxBucketSize), update, MessageBucket.class);
+                return;
+            } catch (DuplicateKeyException e) {
+                // Lost the race for this seq, or it filled up already; look again
+            }
+        }
+    }
+
+    private Query openBucketQuery(Message message, int maxBucketSize) {
+        return new Query(Criteria.where("conversationKey").is(message.getConversationKey())
+            .and("day").is(DAY.format(message.getTimestamp()))
+            .and("count").lt(maxBucketSize));
+    }
+
+    private Query nextBucketQuery(Message message, int maxBucketSize) {
+        String day = DAY.format(message.getTimestamp());
+        Query latest = new Query(Criteria.where("conversationKey").is(message.getConversationKey())
+            .and("day").is(day)
+            .and("seq").exists(true))
+            .with(Sort.by(Sort.Direction.DESC, "seq"))
+            .limit(1);
+        latest.fields().include("seq");
+        MessageBucket last = mongoTemplate.findOne(latest, MessageBucket.class);
+        int seq = last == null ? 0 : last.getSeq() + 1;
+        return new Query(Criteria.where("conversationKey").is(message.getConversationKey())
+            .and("day").is(day)
+            .and("seq").is(seq)
+            .and("count").lt(maxBucketSize));
+    }
+
+    private Update appendUpdate(Message message) {
+        List<String> participants = Stream.of(message.getSenderId(), message.getReceiverId())
+            .sorted()
+            .distinct()
+            .toList();
+        return new Update()
+            .push("messages", message)
+            .inc("count", 1)
+            .setOnInsert("participants", participants)
+            .min("firstMessageAt", message.getTimestamp())
+            .max("lastMessageAt", message.getTimestamp());
+    }
+
+    @Override
+    public List<Message> findBucketedConversation(String conversationKey, Instant before, String beforeId, int limit) {
+        Criteria criteria = Criteria.where("conversationKey").is(conversationKey);
+        if (before != null) {
+            criteria = criteria.and("firstMessageAt").lte(before);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "lastMessageAt"));
+
+        List<Message> page = new ArrayList<>();
+        Instant oldestKept = null;
+        try (Stream<MessageBucket> stream = mongoTemplate.stream(query, MessageBucket.class)) {
+            Iterator<MessageBucket> buckets = stream.iterator();
+            while (buckets.hasNext()) {
+                MessageBucket bucket = buckets.next();
+                // Buckets of the same day can overlap slightly; stop once nothing newer can follow
+                if (oldestKept != null && bucket.getLastMessageAt().isBefore(oldestKept)) {
+                    break;
+                }
+                for (Message message : bucket.getMessages()) {
+                    if (isBefore(message, before, beforeId)) {
+                        page.add(message);
+                    }
+                }
+                if (page.size() >= limit) {
+                    page.sort(NEWEST_FIRST);
+                    page.subList(limit, page.size()).clear();
+                    oldestKept = page.get(limit - 1).getTimestamp();
+                }
+            }
+        }
+        page.sort(NEWEST_FIRST);
+        return page;
+    }
+
+    @Override
+    public List<Message> findBucketedSince(String userId, Instant since, String sinceId, int limit) {
+        Query query = new Query(Criteria.where("participants").is(userId).and("lastMessageAt").gte(since));
+
+        // Keep only the oldest "limit" messages so the result is a gap-free prefix after the cursor
+        PriorityQueue<Message> oldest = new PriorityQueue<>(NEWEST_FIRST);
+        try (Stream<MessageBucket> buckets = mongoTemplate.stream(query, MessageBucket.class)) {
+            buckets.flatMap(bucket -> bucket.getMessages().stream())
+                .filter(message -> isAfter(message, since, sinceId))
+                .forEach(message -> {
+                    oldest.add(message);
+                    if (oldest.size() > limit) {
+                        oldest.poll();
+                    }
+                });
+        }
+        List<Message> result = new ArrayList<>(oldest);
+        result.sort(NEWEST_FIRST.reversed());
+        return result;
+    }
+
+    @Override
+    public Stream<Message> streamBucketed() {
+        return mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE), MessageBucket.class)
+            .flatMap(bucket -> bucket.getMessages().stream());
+    }
+
+    @Override
+    public void deleteFromBucket(String id) {
+        Object messageId = ObjectId.isValid(id) ? new ObjectId(id) : id;
+        mongoTemplate.updateFirst(new Query(Criteria.where("messages._id").is(messageId)),
+            new Update().pull("messages", new Document("_id", messageId)).inc("count", -1),
+            MessageBucket.class);
+    }
+
+    private static boolean isAfter(Message message, Instant since, String sinceId) {
+        int byTime = message.getTimestamp().compareTo(since);
+        return byTime > 0 || (byTime == 0 && sinceId != null && message.getId().compareTo(sinceId) > 0);
+    }
+
+    private static boolean isBefore(Message message, Instant before, String beforeId) {
+        if (before == null) {
+            return true;
+        }
+        int byTime = message.getTimestamp().compareTo(before);
+        return byTime < 0 || (byTime == 0 && beforeId != null && message.getId().compareTo(beforeId) < 0);
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends MongoRepository<MedicineOrder, String> {
+public interface OrderRepository extends MongoRepository<MedicineOrder, String>, OrderRepositoryCustom {
     List<MedicineOrder> findByPatientId(String patientId);
     List<MedicineOrder> findByStatus(String status);
 }
@@ -0,0 +1,24 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.MedicineOrder;
+
+import java.time.Instant;
+import java.util.List;
+
+// Filtered, keyset-paginated order listing, and edits that leave the status alone
+public interface OrderRepositoryCustom {
+
+    // Newest-first page of orders matching the filter; pass the previous page's nextCursor to continue
+    OrderPage findPage(OrderFilter filter, String cursor, int limit);
+
+    // $set the contact and delivery fields; returns the updated order, or null if it does not exist
+    MedicineOrder updateEditableFields(String id, MedicineOrder changes);
+
+    // Every field is optional; from is inclusive, to is exclusive
+    record OrderFilter(String status, String patientId, Instant from, Instant to, Double minAmount, Double maxAmount) {
+    }
+
+    // nextCursor is null on the last page
+    record OrderPage(List<MedicineOrder> orders, String nextCursor) {
+    }
+}
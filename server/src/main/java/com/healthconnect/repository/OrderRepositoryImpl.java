@@ -0,0 +1,109 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.MedicineOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "orderDate").and(Sort.by(Sort.Direction.DESC, "_id"));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public OrderPage findPage(OrderFilter filter, String cursor, int limit) {
+        List<MedicineOrder> orders = mongoTemplate.find(pageQuery(filter, cursor, limit), MedicineOrder.class);
+
+        // One extra row tells whether another page exists without a count query
+        if (orders.size() <= limit) {
+            return new OrderPage(orders, null);
+        }
+        List<MedicineOrder> page = orders.subList(0, limit);
+        MedicineOrder last = page.get(limit - 1);
+        return new OrderPage(List.copyOf(page), new Cursor(last.getOrderDate(), last.getId()).encode());
+    }
+
+    // Package-private so the index test can explain() exactly this query
+    static Query pageQuery(OrderFilter filter, String cursor, int limit) {
+        // Equality fields first so status_orderDate / patient_orderDate serve both the filter and the sort
+        List<Criteria> clauses = new ArrayList<>();
+        if (filter.status() != null) {
+            clauses.add(Criteria.where("status").is(filter.status()));
+        }
+        if (filter.patientId() != null) {
+            clauses.add(Criteria.where("patientId").is(filter.patientId()));
+        }
+        if (filter.from() != null || filter.to() != null) {
+            Criteria range = Criteria.where("orderDate");
+            if (filter.from() != null) {
+                range.gte(filter.from());
+            }
+            if (filter.to() != null) {
+                range.lt(filter.to());
+            }
+            clauses.add(range);
+        }
+        if (filter.minAmount() != null || filter.maxAmount() != null) {
+            Criteria amount = Criteria.where("totalAmount");
+            if (filter.minAmount() != null) {
+                amount.gte(filter.minAmount());
+            }
+            if (filter.maxAmount() != null) {
+                amount.lte(filter.maxAmount());
+            }
+            clauses.add(amount);
+        }
+        if (cursor != null) {
+            Cursor after = Cursor.decode(cursor);
+            clauses.add(new Criteria().orOperator(
+                Criteria.where("orderDate").lt(after.orderDate()),
+                Criteria.where("orderDate").is(after.orderDate()).and("_id").lt(after.id())));
+        }
+
+        Criteria criteria = clauses.isEmpty() ? new Criteria() : new Criteria().andOperator(clauses);
+        return new Query(criteria).with(NEWEST_FIRST).limit(limit + 1);
+    }
+
+    @Override
+    public MedicineOrder updateEditableFields(String id, MedicineOrder changes) {
+        // Status, history, items and totals only change through placement, transitions and fulfillment
+        Update update = new Update()
+            .set("patientName", changes.getPatientName())
+            .set("patientAddress", changes.getPatientAddress())
+            .set("patientPhone", changes.getPatientPhone())
+            .set("deliveryDate", changes.getDeliveryDate());
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), update,
+            FindAndModifyOptions.options().returnNew(true), MedicineOrder.class);
+    }
+
+    // Position of the last order on a page: its orderDate and _id, base64url encoded
+    record Cursor(Instant orderDate, String id) {
+
+        String encode() {
+            String raw = orderDate.toEpochMilli() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int colon = raw.indexOf(':');
+                return new Cursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, colon))), raw.substring(colon + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
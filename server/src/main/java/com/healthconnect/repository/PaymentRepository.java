@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends MongoRepository<Payment, String> {
+public interface PaymentRepository extends MongoRepository<Payment, String>, PaymentRepositoryCustom {
     
     // Find payments by patient ID
     List<Payment> findByPatientIdOrderByCreatedAtDesc(String patientId);
@@ -44,9 +44,9 @@ public interface PaymentRepository extends MongoRepository<Payment, String> {
     @Query("{'paymentStatus': 'FAILED', 'createdAt': {'$gte': ?0}}")
     List<Payment> findFailedPaymentsSince(LocalDateTime since);
     
-    // Get total revenue by date range
+    // Amounts of successful payments in a date range (use sumSuccessfulRevenue for the total)
     @Query(value = "{'paymentStatus': 'SUCCESS', 'createdAt': {'$gte': ?0, '$lte': ?1}}", 
-           fields = "{'amount': 1}")
+           fields = "{'amountPaise': 1}")
     List<Payment> findSuccessfulPaymentsByDateRange(LocalDateTime startDate, LocalDateTime endDate);
     
     // Find payments by invoice number
@@ -0,0 +1,34 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Money;
+import com.healthconnect.model.OutboxEvent;
+import com.healthconnect.model.Payment;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Aggregation-backed payment statistics
+public interface PaymentRepositoryCustom {
+
+    // Counts per status and type, overall count and SUCCESS revenue, in one $facet round trip
+    PaymentTotals aggregateTotals();
+
+    // SUCCESS revenue and payment count with createdAt in [start, end]
+    RevenueTotal sumSuccessfulRevenue(LocalDateTime start, LocalDateTime end);
+
+    // $set the gateway result only, leaving fields other writers own (rollupMarker) alone; null if missing.
+    // A non-null outbox is attached in the same write unless the payment already has one
+    Payment updateStatus(String id, String paymentId, String status, Payment.PaymentDetails details, OutboxEvent outbox);
+
+    record PaymentTotals(long total, Map<String, Long> byStatus, Map<String, Long> byType, long revenuePaise) {
+        public double revenue() {
+            return Money.toRupees(revenuePaise);
+        }
+    }
+
+    record RevenueTotal(long revenuePaise, long payments) {
+        public double revenue() {
+            return Money.toRupees(revenuePaise);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.OutboxEvent;
+import com.healthconnect.model.Payment;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.count;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.facet;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+
+public class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    private static final String SUCCESS = "SUCCESS";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public PaymentTotals aggregateTotals() {
+        // Project first so each facet only carries the three fields it reads; amounts sum as int64 paise
+        Aggregation aggregation = Aggregation.newAggregation(
+            project("paymentStatus", "paymentType", "amountPaise"),
+            facet(count().as("count")).as("total")
+                .and(group("paymentStatus").count().as("count")).as("byStatus")
+                .and(group("paymentType").count().as("count")).as("byType")
+                .and(match(Criteria.where("paymentStatus").is(SUCCESS)), group().sum("amountPaise").as("revenue")).as("revenue"));
+        Document result = mongoTemplate.aggregate(aggregation, Payment.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new PaymentTotals(0, Map.of(), Map.of(), 0);
+        }
+        return new PaymentTotals(
+            first(result, "total").map(d -> number(d.get("count")).longValue()).orElse(0L),
+            counts(result.getList("byStatus", Document.class)),
+            counts(result.getList("byType", Document.class)),
+            first(result, "revenue").map(d -> number(d.get("revenue")).longValue()).orElse(0L));
+    }
+
+    @Override
+    public RevenueTotal sumSuccessfulRevenue(LocalDateTime start, LocalDateTime end) {
+        // Served by the status_createdAt index
+        Aggregation aggregation = Aggregation.newAggregation(
+            match(Criteria.where("paymentStatus").is(SUCCESS).and("createdAt").gte(start).lte(end)),
+            group().sum("amountPaise").as("revenue").count().as("payments"));
+        Document result = mongoTemplate.aggregate(aggregation, Payment.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new RevenueTotal(0, 0);
+        }
+        return new RevenueTotal(number(result.get("revenue")).longValue(), number(result.get("payments")).longValue());
+    }
+
+    @Override
+    public Payment updateStatus(String id, String paymentId, String status, Payment.PaymentDetails details, OutboxEvent outbox) {
+        // Pipeline update so the outbox is written in the same document write as the status;
+        // $literal keeps gateway strings from being read as field paths
+        Document set = new Document("paymentId", literal(paymentId))
+            .append("paymentStatus", literal(status))
+            .append("updatedAt", literal(LocalDateTime.now()));
+        if (details != null) {
+            set.append("paymentDetails", literal(details));
+        }
+        if (outbox != null) {
+            // An event already attached (possibly claimed by the dispatcher) is kept
+            set.append("outbox", new Document("$ifNull", List.of("$outbox", literal(outbox))));
+        }
+        Document updated = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Payment.class))
+            .findOneAndUpdate(new Document("_id", id), List.of(new Document("$set", set)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        return updated == null ? null : mongoTemplate.getConverter().read(Payment.class, updated);
+    }
+
+    private Document literal(Object value) {
+        // Typed with the value's own class so nested documents get no _class hint
+        Object converted = value == null ? null
+            : mongoTemplate.getConverter().convertToMongoType(value, TypeInformation.of(value.getClass()));
+        return new Document("$literal", converted);
+    }
+
+    private static Optional<Document> first(Document result, String facet) {
+        List<Document> rows = result.getList(facet, Document.class);
+        return rows == null || rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    private static Map<String, Long> counts(List<Document> rows) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (rows != null) {
+            for (Document row : rows) {
+                counts.put(String.valueOf(row.get("_id")), number(row.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    private static Number number(Object value) {
+        return value instanceof Number number ? number : 0;
+    }
+}
@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface WalletRepository extends MongoRepository<Wallet, String> {
+public interface WalletRepository extends MongoRepository<Wallet, String>, WalletRepositoryCustom {
     
     // Find wallet by owner ID and type
     Optional<Wallet> findByOwnerIdAndOwnerType(String ownerId, String ownerType);
@@ -21,8 +21,8 @@ public interface WalletRepository extends MongoRepository<Wallet, String> {
     List<Wallet> findByStatus(Wallet.WalletStatus status);
     
     // Find wallets with balance greater than specified amount
-    @Query("{'balance': {'$gte': ?0}}")
-    List<Wallet> findByBalanceGreaterThanEqual(Double balance);
+    @Query("{'balancePaise': {'$gte': ?0}}")
+    List<Wallet> findByBalancePaiseGreaterThanEqual(long balancePaise);
     
     // Find wallets by owner type and status
     List<Wallet> findByOwnerTypeAndStatus(String ownerType, Wallet.WalletStatus status);
@@ -33,7 +33,5 @@ public interface WalletRepository extends MongoRepository<Wallet, String> {
     // Count wallets by owner type
     long countByOwnerType(String ownerType);
     
-    // Get total balance for all active wallets of specific owner type
-    @Query(value = "{'ownerType': ?0, 'status': 'ACTIVE'}", fields = "{'balance': 1}")
-    List<Wallet> findActiveWalletsByOwnerType(String ownerType);
+    // Totals of active wallets per owner type: totalsByOwnerType(Wallet.WalletStatus.ACTIVE)
 }
\ No newline at end of file
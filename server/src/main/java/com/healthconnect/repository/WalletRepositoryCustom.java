@@ -0,0 +1,19 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Money;
+import com.healthconnect.model.Wallet;
+
+import java.util.Map;
+
+// Aggregation-backed wallet statistics
+public interface WalletRepositoryCustom {
+
+    // Wallet count and balance sum per ownerType in one $group round trip; null status counts every wallet
+    Map<String, OwnerTypeTotals> totalsByOwnerType(Wallet.WalletStatus status);
+
+    record OwnerTypeTotals(long wallets, long balancePaise) {
+        public double balance() {
+            return Money.toRupees(balancePaise);
+        }
+    }
+}
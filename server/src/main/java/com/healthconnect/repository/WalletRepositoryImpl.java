@@ -0,0 +1,47 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Wallet;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+
+public class WalletRepositoryImpl implements WalletRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Map<String, OwnerTypeTotals> totalsByOwnerType(Wallet.WalletStatus status) {
+        // With a status filter this is covered by the ownerType_status index up to the balance fetch
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (status != null) {
+            stages.add(match(Criteria.where("status").is(status)));
+        }
+        stages.add(project("ownerType", "balancePaise"));
+        stages.add(group("ownerType").count().as("wallets").sum("balancePaise").as("balancePaise"));
+
+        Map<String, OwnerTypeTotals> totals = new LinkedHashMap<>();
+        for (Document row : mongoTemplate.aggregate(Aggregation.newAggregation(stages), Wallet.class, Document.class)) {
+            totals.put(String.valueOf(row.get("_id")), new OwnerTypeTotals(
+                number(row.get("wallets")).longValue(),
+                number(row.get("balancePaise")).longValue()));
+        }
+        return totals;
+    }
+
+    private static Number number(Object value) {
+        return value instanceof Number number ? number : 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Conversation;
+import com.healthconnect.model.Message;
+import com.healthconnect.model.MessageBucket;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates inbox entries for conversations that predate the conversations collection,
+ * from their newest stored message (messages and message_buckets).
+ *
+ * Each source is one server-side aggregation ending in a $merge that only inserts
+ * missing entries, so entries maintained by recordMessage are never touched. Once both
+ * have completed a marker is recorded in the migrations collection and later startups
+ * skip the job; from then on recordMessage keeps every entry current. Unread counts
+ * start at zero for backfilled entries.
+ */
+@Service
+public class ConversationBackfillService {
+
+    private static final int PREVIEW_LENGTH = 120;
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER = "conversation-backfill";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // After MessageMigrationService has filled in conversationKey and typed timestamps
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        MongoCollection<Document> migrations = mongoTemplate.getCollection(MIGRATIONS);
+        if (migrations.countDocuments(new Document("_id", MARKER)) > 0) {
+            return;
+        }
+        String conversations = mongoTemplate.getCollectionName(Conversation.class);
+
+        // Walks the (conversationKey, timestamp, _id) index, newest message of each conversation first
+        aggregate(Message.class, List.of(
+            new Document("$match", new Document("conversationKey", new Document("$type", "string"))),
+            new Document("$sort", new Document("conversationKey", 1).append("timestamp", -1).append("_id", -1)),
+            new Document("$group", new Document("_id", "$conversationKey").append("last", new Document("$first", "$$ROOT"))),
+            toConversation(),
+            merge(conversations)));
+
+        aggregate(MessageBucket.class, List.of(
+            new Document("$sort", new Document("conversationKey", 1).append("lastMessageAt", -1)),
+            new Document("$group", new Document("_id", "$conversationKey")
+                .append("last", new Document("$first", new Document("$last", "$messages")))),
+            toConversation(),
+            merge(conversations)));
+
+        migrations.updateOne(new Document("_id", MARKER),
+            new Document("$set", new Document("completedAt", new Date())), new UpdateOptions().upsert(true));
+    }
+
+    private void aggregate(Class<?> source, List<Document> pipeline) {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(source))
+            .aggregate(pipeline)
+            .allowDiskUse(true)
+            .toCollection();
+    }
+
+    private Document toConversation() {
+        return new Document("$project", new Document()
+            .append("participants", new Document("$setUnion", List.of(List.of("$last.senderId", "$last.receiverId"))))
+            .append("lastMessage", new Document("$substrCP", List.of(
+                new Document("$ifNull", List.of("$last.message", "")), 0, PREVIEW_LENGTH)))
+            .append("lastSenderId", "$last.senderId")
+            .append("lastSenderName", "$last.senderName")
+            .append("lastMessageAt", "$last.timestamp")
+            .append("unreadCounts", new Document("$literal", new Document())));
+    }
+
+    private Document merge(String into) {
+        return new Document("$merge", new Document("into", into)
+            .append("on", "_id")
+            .append("whenMatched", "keepExisting")
+            .append("whenNotMatched", "insert"));
+    }
+}
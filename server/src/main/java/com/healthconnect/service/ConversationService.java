@@ -0,0 +1,92 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Conversation;
+import com.healthconnect.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+public class ConversationService {
+
+    private static final int PREVIEW_LENGTH = 120;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Fold a newly saved message into its inbox entry.
+     * The preview only moves forward: the upsert matches the entry only while its lastMessageAt
+     * is older, so a late write of an older message collides on _id instead of replacing a newer
+     * preview, and then just counts as unread.
+     */
+    public void recordMessage(Message message) {
+        List<String> participants = Stream.of(message.getSenderId(), message.getReceiverId())
+            .sorted()
+            .distinct()
+            .toList();
+        Update update = new Update()
+            .setOnInsert("participants", participants)
+            .set("lastMessage", preview(message.getMessage()))
+            .set("lastSenderId", message.getSenderId())
+            .set("lastSenderName", message.getSenderName())
+            .set("lastMessageAt", message.getTimestamp());
+        Update unread = new Update();
+        if (!message.getSenderId().equals(message.getReceiverId())) {
+            update.inc("unreadCounts." + message.getReceiverId(), 1);
+            unread.inc("unreadCounts." + message.getReceiverId(), 1);
+        }
+
+        Query older = new Query(Criteria.where("_id").is(message.getConversationKey()).orOperator(
+            Criteria.where("lastMessageAt").lt(message.getTimestamp()),
+            Criteria.where("lastMessageAt").exists(false)));
+        try {
+            mongoTemplate.upsert(older, update, Conversation.class);
+        } catch (DuplicateKeyException e) {
+            if (!unread.getUpdateObject().isEmpty()) {
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(message.getConversationKey())),
+                    unread, Conversation.class);
+            }
+        }
+    }
+
+    // Read receipt: the user has seen everything in the conversation
+    public boolean markRead(String userId, String otherUserId) {
+        Query query = new Query(Criteria.where("_id").is(Message.conversationKey(userId, otherUserId)));
+        Update update = new Update().set("unreadCounts." + userId, 0);
+        return mongoTemplate.updateFirst(query, update, Conversation.class).getMatchedCount() > 0;
+    }
+
+    // One inbox page, most recent activity first, older than the (before, beforeId) cursor; both null for the first page
+    public List<Conversation> getInbox(String userId, Instant before, String beforeId, int limit) {
+        Criteria criteria = Criteria.where("participants").is(userId);
+        if (before != null) {
+            // _id breaks ties between conversations last active in the same millisecond
+            criteria = beforeId == null
+                ? criteria.and("lastMessageAt").lt(before)
+                : criteria.orOperator(
+                    Criteria.where("lastMessageAt").lt(before),
+                    Criteria.where("lastMessageAt").is(before).and("_id").lt(beforeId));
+        }
+        Query query = new Query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "lastMessageAt").and(Sort.by(Sort.Direction.DESC, "_id")))
+            .limit(limit);
+        return mongoTemplate.find(query, Conversation.class);
+    }
+
+    private String preview(String text) {
+        if (text == null || text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        return text.substring(0, PREVIEW_LENGTH) + "…";
+    }
+}
@@ -0,0 +1,145 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.FulfillmentJob;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mongo-backed work queue for order fulfillment shared by every server node.
+ *
+ * A worker claims a job with one findAndModify that sets it RUNNING until
+ * leaseUntil under a leaseToken generated for that claim alone. Every later write
+ * is conditional on the token, so once a lease expires and any worker re-claims
+ * the job, even one on the same node, the old holder's writes are ignored and a
+ * stage is never recorded twice.
+ */
+@Service
+public class FulfillmentQueue {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Queue the order; enqueuing an order twice is a no-op
+    public void enqueue(String orderId, String firstStage) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(new FulfillmentJob(orderId, firstStage, PENDING, 0, null, null, null, now, now, now, null, null));
+        } catch (DuplicateKeyException e) {
+            // Already queued
+        }
+    }
+
+    // Oldest due job, or one whose holder let the lease run out
+    public FulfillmentJob claim(String owner, Duration lease) {
+        Instant now = Instant.now();
+        Query query = new Query(new Criteria().orOperator(
+            Criteria.where("status").is(PENDING).and("nextRunAt").lte(now),
+            Criteria.where("status").is(RUNNING).and("leaseUntil").lt(now)))
+            .with(Sort.by("nextRunAt"));
+        Update update = new Update()
+            .set("status", RUNNING)
+            .set("leaseOwner", owner)
+            .set("leaseToken", new ObjectId().toHexString())
+            .set("leaseUntil", now.plus(lease))
+            .set("updatedAt", now)
+            .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), FulfillmentJob.class);
+    }
+
+    // Record a finished stage and renew the lease; false if the lease was lost
+    public boolean advance(FulfillmentJob job, String nextStage, Duration lease) {
+        Instant now = Instant.now();
+        Update update = new Update().set("stage", nextStage).set("updatedAt", now);
+        if (DONE.equals(nextStage)) {
+            update.set("status", DONE).unset("leaseOwner").unset("leaseToken").unset("leaseUntil");
+        } else {
+            update.set("leaseUntil", now.plus(lease));
+        }
+        boolean held = mongoTemplate.updateFirst(leased(job), update, FulfillmentJob.class).getModifiedCount() == 1;
+        if (held) {
+            job.setStage(nextStage);
+        }
+        return held;
+    }
+
+    // Give the job back for a later attempt, or park it as FAILED once attempts run out
+    public void fail(FulfillmentJob job, String error, int maxAttempts, Duration backoff) {
+        Instant now = Instant.now();
+        boolean exhausted = job.getAttempts() != null && job.getAttempts() >= maxAttempts;
+        Update update = new Update()
+            .set("status", exhausted ? FAILED : PENDING)
+            .set("lastError", error)
+            .set("nextRunAt", now.plus(backoff.multipliedBy(Math.max(1, job.getAttempts()))))
+            .set("updatedAt", now)
+            .unset("leaseOwner")
+            .unset("leaseToken")
+            .unset("leaseUntil");
+        mongoTemplate.updateFirst(leased(job), update, FulfillmentJob.class);
+    }
+
+    // Park the job at its current stage until later, e.g. while the order waits for payment; not a failed attempt
+    public void defer(FulfillmentJob job, Duration delay) {
+        Instant now = Instant.now();
+        Update update = new Update()
+            .set("status", PENDING)
+            .set("nextRunAt", now.plus(delay))
+            .set("updatedAt", now)
+            .inc("attempts", -1)
+            .unset("leaseOwner")
+            .unset("leaseToken")
+            .unset("leaseUntil");
+        mongoTemplate.updateFirst(leased(job), update, FulfillmentJob.class);
+    }
+
+    // Make a deferred job due now (e.g. its order was just paid)
+    public void wake(String orderId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(orderId).and("status").is(PENDING)),
+            new Update().set("nextRunAt", Instant.now()), FulfillmentJob.class);
+    }
+
+    /**
+     * Record that the notification with this key is being sent for the job; true only for the first caller.
+     * Recorded before sending, so a re-claimed job never notifies twice (at the cost of at most one
+     * lost notification if the node dies in between).
+     */
+    public boolean claimNotification(String jobId, String key) {
+        return mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(jobId).and("notifications").ne(key)),
+            new Update().addToSet("notifications", key),
+            FulfillmentJob.class).getModifiedCount() == 1;
+    }
+
+    public Map<String, Long> depth() {
+        Instant now = Instant.now();
+        Map<String, Long> depth = new LinkedHashMap<>();
+        depth.put("due", mongoTemplate.count(new Query(Criteria.where("status").is(PENDING).and("nextRunAt").lte(now)), FulfillmentJob.class));
+        depth.put("pending", mongoTemplate.count(new Query(Criteria.where("status").is(PENDING)), FulfillmentJob.class));
+        depth.put("running", mongoTemplate.count(new Query(Criteria.where("status").is(RUNNING)), FulfillmentJob.class));
+        depth.put("failed", mongoTemplate.count(new Query(Criteria.where("status").is(FAILED)), FulfillmentJob.class));
+        return depth;
+    }
+
+    private Query leased(FulfillmentJob job) {
+        return new Query(Criteria.where("_id").is(job.getId())
+            .and("status").is(RUNNING)
+            .and("leaseToken").is(job.getLeaseToken()));
+    }
+}
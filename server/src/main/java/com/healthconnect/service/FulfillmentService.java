@@ -0,0 +1,372 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.FulfillmentJob;
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.Message;
+import com.healthconnect.model.OrderStatus;
+import com.healthconnect.model.Payment;
+import com.healthconnect.model.StockReservation;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs placed orders through RESERVE_STOCK -> LINK_PAYMENT -> ASSIGN_PHARMACY -> NOTIFY.
+ *
+ * Jobs come from FulfillmentQueue and run on virtual threads; a semaphore caps how
+ * many this node works on at once. Each stage is safe to repeat, because a job whose
+ * lease expired mid-stage is picked up again from that stage by whichever worker claims it.
+ *
+ * An order only moves to PROCESSING (which commits its stock) once a successful
+ * payment is linked. Until then the job is parked at LINK_PAYMENT and re-checked,
+ * so an unpaid order keeps a HELD reservation that the expiry sweep can release.
+ */
+@Service
+public class FulfillmentService {
+
+    public static final String RESERVE_STOCK = "RESERVE_STOCK";
+    public static final String ASSIGN_PHARMACY = "ASSIGN_PHARMACY";
+    public static final String LINK_PAYMENT = "LINK_PAYMENT";
+    public static final String NOTIFY = "NOTIFY";
+    private static final List<String> STAGES = List.of(RESERVE_STOCK, LINK_PAYMENT, ASSIGN_PHARMACY, NOTIFY);
+    private static final List<String> PAID = List.of("SUCCESS", "COMPLETED");
+
+    @Autowired
+    private FulfillmentQueue fulfillmentQueue;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StatusTransitionService statusTransitionService;
+
+    // Lazy: OrderPlacementService enqueues through this service
+    @Lazy
+    @Autowired
+    private OrderPlacementService orderPlacementService;
+
+    @Autowired
+    private MessageStorageService messageStorageService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private MessageStreamService messageStreamService;
+
+    @Value("${fulfillment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fulfillment.workers:8}")
+    private int workers;
+
+    @Value("${fulfillment.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${fulfillment.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${fulfillment.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    // Pharmacies orders are shared between; each order goes to the one with the fewest orders in PROCESSING
+    @Value("${fulfillment.pharmacy-ids:pharmacy_001}")
+    private List<String> pharmacyIds;
+
+    // How often an order still waiting for payment is checked again
+    @Value("${fulfillment.payment-recheck-seconds:60}")
+    private long paymentRecheckSeconds;
+
+    // Records which node holds a lease; fencing uses the per-claim lease token
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("fulfillment-", 0).factory());
+    private final Map<String, StageStats> stageStats = new LinkedHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(workers);
+        STAGES.forEach(stage -> stageStats.put(stage, new StageStats()));
+    }
+
+    // Queue a freshly placed order and start on it without waiting for the next poll
+    public void enqueue(String orderId) {
+        fulfillmentQueue.enqueue(orderId, RESERVE_STOCK);
+        if (enabled) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    // Claim jobs while this node has free workers
+    @Scheduled(fixedDelayString = "${fulfillment.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        Duration lease = Duration.ofSeconds(leaseSeconds);
+        while (permits.tryAcquire()) {
+            FulfillmentJob job;
+            try {
+                job = fulfillmentQueue.claim(nodeId, lease);
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            if (job == null) {
+                permits.release();
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    run(job, lease);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queue", fulfillmentQueue.depth());
+        metrics.put("workers", workers);
+        metrics.put("inFlight", workers - permits.availablePermits());
+        metrics.put("completed", completed.sum());
+        metrics.put("failedAttempts", failed.sum());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stageStats.forEach((stage, stats) -> stages.put(stage, stats.snapshot()));
+        metrics.put("stages", stages);
+        return metrics;
+    }
+
+    private void run(FulfillmentJob job, Duration lease) {
+        int index = STAGES.indexOf(job.getStage());
+        if (index < 0) {
+            fulfillmentQueue.advance(job, FulfillmentQueue.DONE, lease);
+            return;
+        }
+        for (int i = index; i < STAGES.size(); i++) {
+            String stage = STAGES.get(i);
+            StageStats stats = stageStats.get(stage);
+            long started = System.nanoTime();
+            StageResult result;
+            try {
+                result = runStage(stage, job.getId());
+                stats.record(System.nanoTime() - started);
+            } catch (RuntimeException e) {
+                stats.recordFailure(System.nanoTime() - started);
+                failed.increment();
+                fulfillmentQueue.fail(job, stage + ": " + e.getMessage(), maxAttempts, Duration.ofSeconds(retryBackoffSeconds));
+                return;
+            }
+            if (result == StageResult.WAIT) {
+                fulfillmentQueue.defer(job, Duration.ofSeconds(paymentRecheckSeconds));
+                return;
+            }
+            boolean proceed = result == StageResult.NEXT;
+            String next = proceed && i + 1 < STAGES.size() ? STAGES.get(i + 1) : FulfillmentQueue.DONE;
+            if (!fulfillmentQueue.advance(job, next, lease)) {
+                // Lease expired and the job now belongs to someone else
+                return;
+            }
+            if (!proceed) {
+                break;
+            }
+        }
+        completed.increment();
+    }
+
+    // NEXT moves on, WAIT re-runs the stage later, STOP ends the pipeline for this order (e.g. it was cancelled)
+    private enum StageResult { NEXT, WAIT, STOP }
+
+    private StageResult runStage(String stage, String orderId) {
+        MedicineOrder order = mongoTemplate.findById(orderId, MedicineOrder.class);
+        if (order == null || OrderStatus.CANCELLED.name().equals(order.getStatus())) {
+            return StageResult.STOP;
+        }
+        return switch (stage) {
+            case RESERVE_STOCK -> reserveStock(order);
+            case LINK_PAYMENT -> linkPayment(order);
+            case ASSIGN_PHARMACY -> assignPharmacy(order);
+            case NOTIFY -> notifyPatient(order);
+            default -> StageResult.STOP;
+        };
+    }
+
+    // Placement normally reserved already; orders without a live reservation are reserved now or cancelled
+    private StageResult reserveStock(MedicineOrder order) {
+        StockReservation reservation = mongoTemplate.findById(order.getId(), StockReservation.class);
+        if (reservation != null && !"RELEASED".equals(reservation.getStatus())) {
+            return StageResult.NEXT;
+        }
+        if (reservation == null) {
+            try {
+                stockReservationService.reserve(order.getId(), order.getItems());
+                return StageResult.NEXT;
+            } catch (StockReservationService.InsufficientStockException | IllegalArgumentException e) {
+                // Fall through to cancel
+            }
+        }
+        cancel(order);
+        return StageResult.STOP;
+    }
+
+    // Latest successful payment made for this order; waits while the patient has not paid
+    private StageResult linkPayment(MedicineOrder order) {
+        if (order.getPaymentId() != null) {
+            return StageResult.NEXT;
+        }
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("medicineOrderId").is(order.getId()),
+                Criteria.where("orderId").is(order.getId()))
+            .and("paymentStatus").in(PAID))
+            .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+            .limit(1);
+        query.fields().include("_id");
+        Payment payment = mongoTemplate.findOne(query, Payment.class);
+        if (payment == null) {
+            return StageResult.WAIT;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(order.getId()).and("paymentId").exists(false)),
+            new Update().set("paymentId", payment.getId()), MedicineOrder.class);
+        order.setPaymentId(payment.getId());
+        return StageResult.NEXT;
+    }
+
+    private StageResult assignPharmacy(MedicineOrder order) {
+        // Jobs queued before payment was checked first may reach this stage unpaid
+        if (order.getPaymentId() == null) {
+            StageResult linked = linkPayment(order);
+            if (linked != StageResult.NEXT) {
+                return linked;
+            }
+        }
+        if (order.getPharmacyId() == null) {
+            mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(order.getId()).and("pharmacyId").exists(false)),
+                new Update().set("pharmacyId", choosePharmacy()),
+                MedicineOrder.class);
+        }
+        OrderStatus processing = OrderStatus.PROCESSING;
+        StatusTransitionService.TransitionResult<MedicineOrder> result = statusTransitionService.transition(
+            MedicineOrder.class, order.getId(), processing.name(), processing.allowedFrom());
+        if (result.outcome() == StatusTransitionService.Outcome.UPDATED) {
+            orderPlacementService.onStatusChanged(order.getId(), processing.name());
+        }
+        // Already further along (moved by staff) is fine; anything else is left to the next attempt
+        return result.outcome() != StatusTransitionService.Outcome.NOT_FOUND ? StageResult.NEXT : StageResult.STOP;
+    }
+
+    // The configured pharmacy with the fewest orders in PROCESSING; ties go to the first listed
+    private String choosePharmacy() {
+        if (pharmacyIds.size() == 1) {
+            return pharmacyIds.get(0);
+        }
+        Aggregation load = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("status").is(OrderStatus.PROCESSING.name()).and("pharmacyId").in(pharmacyIds)),
+            Aggregation.group("pharmacyId").count().as("open"));
+        Map<String, Integer> open = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(load, MedicineOrder.class, Document.class)) {
+            open.put(row.getString("_id"), row.getInteger("open"));
+        }
+        return pharmacyIds.stream()
+            .min(Comparator.comparingInt(id -> open.getOrDefault(id, 0)))
+            .orElseThrow();
+    }
+
+    private StageResult notifyPatient(MedicineOrder order) {
+        if (order.getPatientId() == null) {
+            return StageResult.NEXT;
+        }
+        // Recorded before sending, so a job re-claimed after this point does not message the patient again
+        if (!fulfillmentQueue.claimNotification(order.getId(), "order-processing")) {
+            return StageResult.NEXT;
+        }
+        String pharmacyId = order.getPharmacyId() != null ? order.getPharmacyId() : pharmacyIds.get(0);
+        Message message = new Message();
+        message.setSenderId(pharmacyId);
+        message.setReceiverId(order.getPatientId());
+        message.setSenderName("HealthConnect Pharmacy");
+        message.setSenderType("PHARMACY");
+        message.setMessage("Your order " + order.getId() + " is being processed by our pharmacy.");
+        message.setTimestamp(Instant.now());
+        message.setConversationKey(Message.conversationKey(pharmacyId, order.getPatientId()));
+        Message saved = messageStorageService.save(message);
+        conversationService.recordMessage(saved);
+        messageStreamService.publish(saved);
+        return StageResult.NEXT;
+    }
+
+    private void cancel(MedicineOrder order) {
+        OrderStatus cancelled = OrderStatus.CANCELLED;
+        StatusTransitionService.TransitionResult<MedicineOrder> result = statusTransitionService.transition(
+            MedicineOrder.class, order.getId(), cancelled.name(), cancelled.allowedFrom());
+        if (result.outcome() == StatusTransitionService.Outcome.UPDATED) {
+            orderPlacementService.onStatusChanged(order.getId(), cancelled.name());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class StageStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        void recordFailure(long nanos) {
+            failures.increment();
+            record(nanos);
+        }
+
+        Map<String, Object> snapshot() {
+            long runs = count.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", runs);
+            snapshot.put("failures", failures.sum());
+            snapshot.put("avgMs", runs == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / runs);
+            snapshot.put("maxMs", maxNanos.get() / 1_000_000.0);
+            return snapshot;
+        }
+    }
+}
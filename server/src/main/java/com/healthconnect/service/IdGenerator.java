@@ -0,0 +1,90 @@
+package com.healthconnect.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 63-bit IDs: 41 bits of milliseconds since 2024-01-01 UTC,
+ * 10 bits of node ID and a 12-bit per-millisecond sequence.
+ *
+ * The last (timestamp, sequence) pair lives in one AtomicLong advanced by CAS, so
+ * callers never block. IDs only ever increase on a node: if the clock steps back,
+ * or 4096 IDs are taken within one millisecond, the generator keeps counting on
+ * its own logical clock until the wall clock catches up.
+ */
+@Service
+public class IdGenerator {
+
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final DateTimeFormatter INVOICE_DAY = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    // -1 derives the node ID from host name and process ID; set it explicitly when running several nodes
+    @Value("${ids.node-id:-1}")
+    private long configuredNodeId;
+
+    private long nodeId;
+
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last ID handed out
+    private final AtomicLong last = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId >= 0 ? configuredNodeId : derivedNodeId();
+        if (nodeId > MAX_NODE) {
+            throw new IllegalStateException("ids.node-id must be between 0 and " + MAX_NODE);
+        }
+    }
+
+    public long nextId() {
+        long now = System.currentTimeMillis() - EPOCH;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            long candidate = now << SEQUENCE_BITS;
+            // Same or earlier millisecond: take the next sequence number, spilling into the next millisecond
+            next = candidate > previous ? candidate : previous + 1;
+        } while (!last.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    // e.g. INV-20241018-3HD0X4K2P9QA; the date is when the ID was issued (UTC)
+    public String nextInvoiceNumber() {
+        long id = nextId();
+        return "INV-" + INVOICE_DAY.format(timestampOf(id)) + "-" + Long.toString(id, 36).toUpperCase(Locale.ROOT);
+    }
+
+    // Shorter base-36 form for references such as "order_..." and "txn_..."
+    public String nextId(String prefix) {
+        return prefix + Long.toString(nextId(), 36);
+    }
+
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH);
+    }
+
+    private static long derivedNodeId() {
+        String identity;
+        try {
+            identity = InetAddress.getLocalHost().getHostName() + "/" + ManagementFactory.getRuntimeMXBean().getName();
+        } catch (Exception e) {
+            identity = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return Math.floorMod(identity.hashCode(), MAX_NODE + 1);
+    }
+}
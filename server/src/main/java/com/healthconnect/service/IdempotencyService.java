@@ -0,0 +1,247 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthconnect.model.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key and replays its response to retries.
+ *
+ * Duplicates arriving on this node while the first execution is running wait on
+ * its future in the hot cache. Across nodes the unique _id of the IN_FLIGHT record
+ * decides the winner, and the others poll the record until it completes. Server
+ * errors are not remembered, so a retry after a 5xx runs the request again.
+ *
+ * The IN_FLIGHT claim is a lease (idempotency.claim-lease-ms): if its node dies
+ * mid-request, the next caller after claimedUntil takes the key over instead of
+ * getting 409 until the record expires.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final String IN_FLIGHT = "IN_FLIGHT";
+    private static final String COMPLETED = "COMPLETED";
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    // Longer than any request should take; a live claimant is never taken over
+    @Value("${idempotency.claim-lease-ms:120000}")
+    private long claimLeaseMs;
+
+    @Value("${idempotency.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${idempotency.cache.ttl-minutes:10}")
+    private long cacheTtlMinutes;
+
+    private Cache<String, CompletableFuture<StoredResponse>> hot;
+
+    @PostConstruct
+    void init() {
+        hot = Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+            .build();
+    }
+
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 255) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " must be at most 255 characters"));
+        }
+
+        String id = scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = hot.asMap().putIfAbsent(id, mine);
+        if (existing != null) {
+            return replay(await(existing), fingerprint);
+        }
+
+        try {
+            StoredResponse stored = runOnce(id, fingerprint, action);
+            mine.complete(stored);
+            // Only final answers stay cached; errors and "still running" must be retried
+            if (stored.status() >= 500 || stored.fingerprint() == null) {
+                hot.invalidate(id);
+            }
+            return replay(stored, fingerprint);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            hot.invalidate(id);
+            throw e;
+        }
+    }
+
+    private StoredResponse runOnce(String id, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (!claim(id, fingerprint, token)) {
+            // Seen before, here after a cache eviction or on another node
+            StoredResponse stored = awaitRecord(id, deadline);
+            if (stored != null) {
+                return stored;
+            }
+            // The claimant's lease ran out: try to take the key over
+        }
+
+        Query mine = new Query(Criteria.where("_id").is(id).and("claimToken").is(token));
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            mongoTemplate.remove(mine, IdempotencyRecord.class);
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(response.getStatusCode().value(), toJson(response.getBody()), fingerprint);
+        if (stored.status() >= 500) {
+            mongoTemplate.remove(mine, IdempotencyRecord.class);
+        } else {
+            mongoTemplate.updateFirst(mine,
+                new Update().set("status", COMPLETED)
+                    .set("responseStatus", stored.status())
+                    .set("responseBody", stored.body()),
+                IdempotencyRecord.class);
+        }
+        return stored;
+    }
+
+    // Insert the IN_FLIGHT record, or take over one whose lease has run out
+    private boolean claim(String id, String fingerprint, String token) {
+        Instant now = Instant.now();
+        Instant claimedUntil = now.plusMillis(claimLeaseMs);
+        try {
+            mongoTemplate.insert(new IdempotencyRecord(id, fingerprint, IN_FLIGHT, null, null, now,
+                now.plus(Duration.ofHours(ttlHours)), claimedUntil, token));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Records from before leases existed count as claimed until createdAt + lease
+            Query stale = new Query(Criteria.where("_id").is(id).and("status").is(IN_FLIGHT).orOperator(
+                Criteria.where("claimedUntil").lt(now),
+                Criteria.where("claimedUntil").exists(false).and("createdAt").lt(now.minusMillis(claimLeaseMs))));
+            Update takeOver = new Update()
+                .set("fingerprint", fingerprint)
+                .set("claimedUntil", claimedUntil)
+                .set("claimToken", token);
+            return mongoTemplate.updateFirst(stale, takeOver, IdempotencyRecord.class).getModifiedCount() == 1;
+        }
+    }
+
+    // The stored outcome, 409 while it is still running, or null once the claim has gone stale
+    private StoredResponse awaitRecord(String id, long deadline) {
+        while (true) {
+            IdempotencyRecord record = mongoTemplate.findById(id, IdempotencyRecord.class);
+            if (record == null) {
+                // The first attempt failed and cleared its claim; the client should retry
+                return inProgress();
+            }
+            if (COMPLETED.equals(record.getStatus())) {
+                return new StoredResponse(record.getResponseStatus(), record.getResponseBody(), record.getFingerprint());
+            }
+            Instant claimedUntil = record.getClaimedUntil() != null
+                ? record.getClaimedUntil()
+                : record.getCreatedAt().plusMillis(claimLeaseMs);
+            if (claimedUntil.isBefore(Instant.now())) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return inProgress();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return inProgress();
+            }
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> first) {
+        try {
+            return first.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return inProgress();
+        }
+    }
+
+    private StoredResponse inProgress() {
+        return new StoredResponse(HttpStatus.CONFLICT.value(),
+            toJson(Map.of("error", "A request with this " + HEADER + " is still being processed")), null);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String fingerprint) {
+        if (stored.fingerprint() != null && !stored.fingerprint().equals(fingerprint)) {
+            return ResponseEntity.unprocessableEntity()
+                .body(Map.of("error", HEADER + " was already used with a different request body"));
+        }
+        return ResponseEntity.status(stored.status())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(stored.body());
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(toJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+    }
+
+    private record StoredResponse(int status, String body, String fingerprint) {
+    }
+}
@@ -0,0 +1,371 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.LedgerAccount;
+import com.healthconnect.model.LedgerPosting;
+import com.healthconnect.model.Money;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+
+/**
+ * Double-entry journal for money moving through the platform.
+ *
+ * A journal's lines go to ledger_postings in one unordered bulk insert with applied=false;
+ * the unique (journalId, line) index makes re-posting after a retry collide instead of
+ * duplicating lines. Per-account running totals in ledger_accounts move with one $inc per
+ * account, fenced the same way wallet balances are: each attempt first claims the journal
+ * on every account under its own token (pendingJournals), and the $inc only matches that
+ * token, marking the claim applied in the same write. The lines are then marked applied and
+ * the claims dropped. A re-post of an applied journal changes nothing, one abandoned halfway
+ * is finished without double-counting, and an attempt that was taken over moves nothing.
+ */
+@Service
+public class LedgerPostingService {
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int MAX_REPORTED_JOURNALS = 20;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // A claim on a journal older than this is taken to be abandoned and may be taken over
+    @Value("${ledger.pending-timeout-ms:60000}")
+    private long pendingTimeoutMs;
+
+    // Lines are added with debit/credit and posted together
+    public Journal journal(String journalId, String paymentId, String description) {
+        return new Journal(journalId, paymentId, description);
+    }
+
+    public void post(Journal journal) {
+        long debits = 0;
+        long credits = 0;
+        for (LedgerPosting line : journal.lines) {
+            if (line.getSide() == LedgerPosting.Side.DEBIT) {
+                debits += line.getAmountPaise();
+            } else {
+                credits += line.getAmountPaise();
+            }
+        }
+        if (debits != credits) {
+            throw new IllegalStateException("Unbalanced journal " + journal.journalId
+                + ": debits " + debits + " != credits " + credits + " paise");
+        }
+        if (journal.lines.isEmpty()) {
+            return;
+        }
+
+        Set<String> accountIds = new LinkedHashSet<>();
+        journal.lines.forEach(line -> accountIds.add(line.getAccountId()));
+        createAccounts(accountIds);
+        String token = new ObjectId().toHexString();
+        Set<String> claimed = claim(journal.journalId, accountIds, token);
+
+        BulkOperations postings = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LedgerPosting.class);
+        postings.insert(journal.lines);
+        boolean postedBefore = executeIgnoringDuplicates(postings);
+
+        // Only a journal posted before has to be read back; otherwise the lines just inserted are the journal
+        List<LedgerPosting> stored = postedBefore
+            ? mongoTemplate.find(new Query(Criteria.where("journalId").is(journal.journalId)), LedgerPosting.class)
+            : journal.lines;
+        if (stored.stream().noneMatch(line -> Boolean.FALSE.equals(line.getApplied()))) {
+            // Fully applied earlier; drop the claims in case that attempt stopped just before doing so
+            release(journal.journalId, accountIds);
+            return;
+        }
+
+        // Net movement per account, so an account on several lines gets a single $inc
+        Map<String, long[]> movements = new LinkedHashMap<>();
+        for (LedgerPosting line : stored) {
+            if (claimed.contains(line.getAccountId())) {
+                long[] movement = movements.computeIfAbsent(line.getAccountId(), a -> new long[3]);
+                movement[line.getSide() == LedgerPosting.Side.DEBIT ? 0 : 1] += line.getAmountPaise();
+                movement[2]++;
+            }
+        }
+        if (increment(movements, token) != movements.size()) {
+            throw new IllegalStateException("Journal " + journal.journalId + " was taken over by another attempt");
+        }
+
+        List<String> lineIds = stored.stream().map(LedgerPosting::getId).toList();
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(lineIds)), new Update().set("applied", true), LedgerPosting.class);
+        release(journal.journalId, accountIds);
+    }
+
+    // Create missing accounts first so the claims and the fenced $inc never have to upsert
+    private void createAccounts(Collection<String> accountIds) {
+        BulkOperations create = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LedgerAccount.class);
+        for (String accountId : accountIds) {
+            int separator = accountId.indexOf(':');
+            create.upsert(new Query(Criteria.where("_id").is(accountId)), new Update()
+                .setOnInsert("ownerType", accountId.substring(0, separator))
+                .setOnInsert("ownerId", accountId.substring(separator + 1))
+                .setOnInsert("debitPaise", 0L)
+                .setOnInsert("creditPaise", 0L)
+                .setOnInsert("postings", 0L)
+                .setOnInsert("pendingJournals", List.of()));
+        }
+        executeIgnoringDuplicates(create);
+    }
+
+    /**
+     * Claim the journal on each account for this attempt, in one bulk when nobody else holds
+     * a claim. Returns the accounts this attempt must still $inc; accounts an earlier attempt
+     * already applied are left out.
+     */
+    private Set<String> claim(String journalId, Set<String> accountIds, String token) {
+        Instant now = Instant.now();
+        LedgerAccount.PendingJournal pending = new LedgerAccount.PendingJournal(journalId, token, now, false);
+        BulkOperations claims = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LedgerAccount.class);
+        for (String accountId : accountIds) {
+            claims.updateOne(new Query(Criteria.where("_id").is(accountId).and("pendingJournals.journalId").ne(journalId)),
+                new Update().push("pendingJournals", pending));
+        }
+        if (claims.execute().getModifiedCount() == accountIds.size()) {
+            return accountIds;
+        }
+
+        // Someone else has claimed the journal on some account: see who, account by account
+        Set<String> claimed = new LinkedHashSet<>();
+        Query query = new Query(Criteria.where("_id").in(accountIds));
+        query.fields().include("pendingJournals");
+        try {
+            for (LedgerAccount account : mongoTemplate.find(query, LedgerAccount.class)) {
+                LedgerAccount.PendingJournal current = account.getPendingJournals() == null ? null
+                    : account.getPendingJournals().stream()
+                        .filter(p -> journalId.equals(p.getJournalId())).findFirst().orElse(null);
+                if (current == null) {
+                    throw new IllegalStateException("Journal " + journalId + " changed while claiming it");
+                }
+                if (token.equals(current.getToken())) {
+                    claimed.add(account.getId());
+                } else if (!current.isApplied()) {
+                    if (current.getClaimedAt().isAfter(now.minusMillis(pendingTimeoutMs))) {
+                        throw new IllegalStateException("Journal " + journalId + " is still being posted");
+                    }
+                    // Abandoned: the new token fences the old attempt's $inc out
+                    Query abandoned = new Query(Criteria.where("_id").is(account.getId())
+                        .and("pendingJournals.token").is(current.getToken()));
+                    Update takeOver = new Update()
+                        .set("pendingJournals.$.token", token)
+                        .set("pendingJournals.$.claimedAt", now);
+                    if (mongoTemplate.updateFirst(abandoned, takeOver, LedgerAccount.class).getModifiedCount() != 1) {
+                        throw new IllegalStateException("Journal " + journalId + " changed while claiming it");
+                    }
+                    claimed.add(account.getId());
+                }
+            }
+        } catch (IllegalStateException e) {
+            // Give back what this attempt claimed so the holder is not blocked by it
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(accountIds)),
+                new Update().pull("pendingJournals", new Document("journalId", journalId).append("token", token)),
+                LedgerAccount.class);
+            throw e;
+        }
+        return claimed;
+    }
+
+    // The $inc per account, only where this attempt's claim is current; returns how many matched
+    private int increment(Map<String, long[]> movements, String token) {
+        if (movements.isEmpty()) {
+            return 0;
+        }
+        BulkOperations increment = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LedgerAccount.class);
+        movements.forEach((accountId, movement) ->
+            increment.updateOne(new Query(Criteria.where("_id").is(accountId).and("pendingJournals.token").is(token)),
+                new Update()
+                    .inc("debitPaise", movement[0])
+                    .inc("creditPaise", movement[1])
+                    .inc("postings", movement[2])
+                    .set("updatedAt", Instant.now())
+                    .set("pendingJournals.$.applied", true)
+                    .unset("pendingJournals.$.token")));
+        return increment.execute().getModifiedCount();
+    }
+
+    // Once the lines are applied nothing about the journal is pending; any claim left on it can go
+    private void release(String journalId, Collection<String> accountIds) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(accountIds).and("pendingJournals.journalId").is(journalId)),
+            new Update().pull("pendingJournals", new Document("journalId", journalId)), LedgerAccount.class);
+    }
+
+    /**
+     * Finish claims whose attempt died. An unapplied one is dropped, which fences its attempt
+     * out; an applied one is dropped once the journal's lines are all applied (until then the
+     * next re-post, which the outbox guarantees, still needs it).
+     */
+    @Scheduled(fixedDelayString = "${ledger.pending-sweep-ms:60000}")
+    public void finishAbandonedClaims() {
+        Instant cutoff = Instant.now().minusMillis(pendingTimeoutMs);
+        Query query = new Query(Criteria.where("pendingJournals").elemMatch(Criteria.where("claimedAt").lt(cutoff)));
+        query.fields().include("pendingJournals");
+        for (LedgerAccount account : mongoTemplate.find(query, LedgerAccount.class)) {
+            for (LedgerAccount.PendingJournal pending : account.getPendingJournals()) {
+                if (!pending.getClaimedAt().isBefore(cutoff)) {
+                    continue;
+                }
+                Document claim = new Document("journalId", pending.getJournalId());
+                if (!pending.isApplied()) {
+                    claim.append("token", pending.getToken());
+                } else if (mongoTemplate.exists(new Query(Criteria.where("journalId").is(pending.getJournalId())
+                        .and("applied").is(false)), LedgerPosting.class)) {
+                    continue;
+                }
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(account.getId())),
+                    new Update().pull("pendingJournals", claim), LedgerAccount.class);
+            }
+        }
+    }
+
+    public LedgerAccount getAccount(String ownerType, String ownerId) {
+        return mongoTemplate.findById(LedgerAccount.accountId(ownerType, ownerId), LedgerAccount.class);
+    }
+
+    /**
+     * Trial balance over every posting, streamed in journal order so memory stays flat
+     * however many postings exist. Also reports journals whose own lines do not balance,
+     * and whether the running account totals equal the posted totals. A journal being
+     * posted at that moment can show as a mismatch until it is applied.
+     */
+    public Map<String, Object> trialBalance() {
+        Query query = new Query().with(Sort.by("journalId", "line"));
+        query.fields().include("journalId").include("side").include("amountPaise").exclude("_id");
+        query.cursorBatchSize(5000);
+
+        long postings = 0;
+        long journals = 0;
+        long debits = 0;
+        long credits = 0;
+        long unbalancedCount = 0;
+        List<String> unbalanced = new ArrayList<>();
+        String currentJournal = null;
+        long currentNet = 0;
+        String collection = mongoTemplate.getCollectionName(LedgerPosting.class);
+        try (Stream<Document> lines = mongoTemplate.stream(query, Document.class, collection)) {
+            for (Document line : (Iterable<Document>) lines::iterator) {
+                String journalId = line.getString("journalId");
+                if (!Objects.equals(journalId, currentJournal)) {
+                    if (currentJournal != null && currentNet != 0) {
+                        unbalancedCount++;
+                        if (unbalanced.size() < MAX_REPORTED_JOURNALS) {
+                            unbalanced.add(currentJournal);
+                        }
+                    }
+                    currentJournal = journalId;
+                    currentNet = 0;
+                    journals++;
+                }
+                long amount = line.get("amountPaise") instanceof Number number ? number.longValue() : 0;
+                if (LedgerPosting.Side.DEBIT.name().equals(line.getString("side"))) {
+                    debits += amount;
+                    currentNet += amount;
+                } else {
+                    credits += amount;
+                    currentNet -= amount;
+                }
+                postings++;
+            }
+        }
+        if (currentJournal != null && currentNet != 0) {
+            unbalancedCount++;
+            if (unbalanced.size() < MAX_REPORTED_JOURNALS) {
+                unbalanced.add(currentJournal);
+            }
+        }
+
+        Document accounts = mongoTemplate.aggregate(
+            newAggregation(group().sum("debitPaise").as("debits").sum("creditPaise").as("credits")),
+            LedgerAccount.class, Document.class).getUniqueMappedResult();
+        long accountDebits = accounts != null && accounts.get("debits") instanceof Number n ? n.longValue() : 0;
+        long accountCredits = accounts != null && accounts.get("credits") instanceof Number n ? n.longValue() : 0;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("postings", postings);
+        result.put("journals", journals);
+        result.put("totalDebits", Money.toRupees(debits));
+        result.put("totalCredits", Money.toRupees(credits));
+        result.put("unbalancedJournals", unbalancedCount);
+        result.put("unbalancedJournalIds", unbalanced);
+        result.put("accountDebits", Money.toRupees(accountDebits));
+        result.put("accountCredits", Money.toRupees(accountCredits));
+        // Account totals are kept incrementally; they must add up to exactly what was posted
+        boolean accountsMatchPostings = accountDebits == debits && accountCredits == credits;
+        result.put("accountsMatchPostings", accountsMatchPostings);
+        result.put("balanced", debits == credits && unbalancedCount == 0 && accountsMatchPostings);
+        result.put("checkedAt", Instant.now());
+        return result;
+    }
+
+    // true if anything was already there
+    private boolean executeIgnoringDuplicates(BulkOperations bulk) {
+        try {
+            bulk.execute();
+            return false;
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+            return true;
+        }
+    }
+
+    public static final class Journal {
+        private final String journalId;
+        private final String paymentId;
+        private final String description;
+        private final Instant postedAt = Instant.now();
+        private final List<LedgerPosting> lines = new ArrayList<>();
+
+        private Journal(String journalId, String paymentId, String description) {
+            this.journalId = journalId;
+            this.paymentId = paymentId;
+            this.description = description;
+        }
+
+        public Journal debit(String accountId, long amountPaise) {
+            return add(accountId, LedgerPosting.Side.DEBIT, amountPaise);
+        }
+
+        public Journal credit(String accountId, long amountPaise) {
+            return add(accountId, LedgerPosting.Side.CREDIT, amountPaise);
+        }
+
+        // Zero-amount lines are skipped
+        private Journal add(String accountId, LedgerPosting.Side side, long amountPaise) {
+            if (amountPaise < 0) {
+                throw new IllegalArgumentException("Posting amounts must not be negative");
+            }
+            if (amountPaise > 0) {
+                // IDs assigned here so the lines can be marked applied by _id without reading them back
+                lines.add(new LedgerPosting(new ObjectId().toHexString(), journalId, lines.size(), accountId, side,
+                    amountPaise, paymentId, description, postedAt, false));
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.healthconnect.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.healthconnect.model.Medicine;
+import com.healthconnect.repository.MedicineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of MedicineRepository.
+ *
+ * Holds the full catalog, per-id entries and per-category lists, bounded by
+ * size and TTL. Writes made through MedicineController/AdminController evict
+ * the affected entries; the TTL only bounds how stale stock counts changed by
+ * orders or other nodes can get.
+ *
+ * ETags are a digest of the fields a client sees, computed when a list is
+ * loaded, so a TTL reload with new prices or stock changes the ETag and two
+ * nodes holding the same data hand out the same one.
+ */
+@Service
+public class MedicineCatalogCache {
+
+    private static final String ALL = "*";
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Value("${medicines.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${medicines.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, Medicine> byId;
+    private Cache<String, Listing> lists;
+
+    public record Listing(List<Medicine> medicines, String eTag) {
+        static Listing of(List<Medicine> medicines) {
+            return new Listing(List.copyOf(medicines), eTagOf(medicines));
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        byId = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        lists = Caffeine.newBuilder()
+            .maximumSize(256)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+    }
+
+    public Listing getAll() {
+        return lists.get(ALL, k -> Listing.of(medicineRepository.findAll()));
+    }
+
+    public Listing getByCategory(String category) {
+        return lists.get("category:" + category, k -> Listing.of(medicineRepository.findByCategory(category)));
+    }
+
+    public Optional<Medicine> getById(String id) {
+        // A null from the loader is not cached, so unknown ids are looked up again next time
+        return Optional.ofNullable(byId.get(id, k -> medicineRepository.findById(k).orElse(null)));
+    }
+
+    // Cached entries for the ids; all misses are loaded with one findAllById
+    public Map<String, Medicine> getAllById(Collection<String> ids) {
+        return byId.getAll(ids, missing -> {
+            Map<String, Medicine> loaded = new LinkedHashMap<>();
+            for (Medicine medicine : medicineRepository.findAllById(List.copyOf(missing))) {
+                loaded.put(medicine.getId(), medicine);
+            }
+            return loaded;
+        });
+    }
+
+    // Evict everything a write to this medicine can have changed
+    public void evict(String id, String... categories) {
+        byId.invalidate(id);
+        lists.invalidate(ALL);
+        for (String category : categories) {
+            if (category != null) {
+                lists.invalidate("category:" + category);
+            }
+        }
+    }
+
+    // Update whose previous category is unknown
+    public void evictWithAllCategories(String id) {
+        byId.invalidate(id);
+        lists.invalidateAll();
+    }
+
+    // Weak ETag over the serialized fields (holds is not part of the JSON, so reservations alone don't change it)
+    public static String eTagOf(Collection<Medicine> medicines) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Medicine medicine : medicines) {
+            String row = String.join("\u0000", medicine.getId(), medicine.getName(), medicine.getDescription(),
+                String.valueOf(medicine.getPrice()), medicine.getCategory(), String.valueOf(medicine.getStock()));
+            digest.update(row.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return "W/\"catalog-" + HexFormat.of().formatHex(digest.digest(), 0, 8) + "\"";
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "byId", describe(byId.stats(), byId.estimatedSize()),
+            "lists", describe(lists.stats(), lists.estimatedSize())
+        );
+    }
+
+    private Map<String, Object> describe(CacheStats stats, long size) {
+        return Map.of(
+            "size", size,
+            "hitCount", stats.hitCount(),
+            "missCount", stats.missCount(),
+            "hitRate", stats.hitRate(),
+            "evictionCount", stats.evictionCount()
+        );
+    }
+}
@@ -0,0 +1,372 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Medicine;
+import com.healthconnect.repository.MedicineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory trigram index over medicine name, category and description.
+ *
+ * The catalog is small and changes rarely, so every write rebuilds an immutable
+ * snapshot and readers never lock. Plain search keeps the old "name contains"
+ * semantics (now across all three fields) and only checks the docs left after
+ * intersecting the postings of the query's trigrams; fuzzy search ranks by shared
+ * trigrams so typos still match.
+ *
+ * The index keeps only ids, names and normalized text: results are hydrated through
+ * MedicineCatalogCache, so stock and price are as fresh as everywhere else the
+ * catalog is served, and the index is rebuilt periodically to pick up catalog edits
+ * made on other nodes.
+ */
+@Service
+public class MedicineSearchIndex {
+
+    private static final int NAME = 0;
+    private static final int CATEGORY = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int FIELDS = 3;
+    private static final int[] FIELD_WEIGHTS = {3, 2, 1};
+    private static final double FUZZY_THRESHOLD = 0.4;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private MedicineCatalogCache medicineCatalogCache;
+
+    private final Map<String, Entry> catalog = new LinkedHashMap<>();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+    // Build after the startup data loaders have run, then refresh for edits made elsewhere
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${medicines.search.rebuild-interval-ms:300000}",
+        fixedDelayString = "${medicines.search.rebuild-interval-ms:300000}")
+    public synchronized void rebuild() {
+        catalog.clear();
+        for (Medicine medicine : medicineRepository.findAll()) {
+            catalog.put(medicine.getId(), Entry.of(medicine));
+        }
+        snapshot = Snapshot.build(catalog.values());
+    }
+
+    public synchronized void upsert(Medicine medicine) {
+        catalog.put(medicine.getId(), Entry.of(medicine));
+        snapshot = Snapshot.build(catalog.values());
+    }
+
+    public synchronized void remove(String medicineId) {
+        if (catalog.remove(medicineId) != null) {
+            snapshot = Snapshot.build(catalog.values());
+        }
+    }
+
+    // Top-K medicines for a query, best match first
+    public List<Medicine> search(String query, int limit, boolean fuzzy) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        Snapshot current = snapshot;
+        List<String> ids = fuzzy ? current.fuzzySearch(normalized, limit) : current.containsSearch(normalized, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Medicine> loaded = medicineCatalogCache.getAllById(ids);
+        // Keep the ranking; ids deleted since the last rebuild drop out
+        return ids.stream().map(loaded::get).filter(Objects::nonNull).toList();
+    }
+
+    // Distinct medicine names having a word (or the whole name) starting with the prefix
+    public List<String> autocomplete(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return snapshot.autocomplete(normalized, limit);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                out.append(c);
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            out.setLength(end - 1);
+        }
+        return out.toString();
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    // What the index keeps per medicine: the display name and the normalized searchable fields
+    private record Entry(String id, String name, String[] fields) {
+        static Entry of(Medicine medicine) {
+            return new Entry(medicine.getId(), medicine.getName(), new String[] {
+                normalize(medicine.getName()),
+                normalize(medicine.getCategory()),
+                normalize(medicine.getDescription())
+            });
+        }
+    }
+
+    private static final class Snapshot {
+        private final String[] ids;
+        private final String[] names;
+        private final String[][] fields; // normalized [doc][field]
+        private final Map<String, int[]> postings; // trigram -> doc * FIELDS + field
+        private final NavigableMap<String, int[]> words; // name word / full name -> docs
+
+        private Snapshot(String[] ids, String[] names, String[][] fields, Map<String, int[]> postings,
+                         NavigableMap<String, int[]> words) {
+            this.ids = ids;
+            this.names = names;
+            this.fields = fields;
+            this.postings = postings;
+            this.words = words;
+        }
+
+        static Snapshot build(Collection<Entry> catalog) {
+            Entry[] entries = catalog.toArray(new Entry[0]);
+            String[] ids = new String[entries.length];
+            String[] names = new String[entries.length];
+            String[][] fields = new String[entries.length][];
+            Map<String, List<Integer>> postingLists = new HashMap<>();
+            Map<String, List<Integer>> wordLists = new TreeMap<>();
+
+            for (int doc = 0; doc < entries.length; doc++) {
+                ids[doc] = entries[doc].id();
+                names[doc] = entries[doc].name();
+                fields[doc] = entries[doc].fields();
+                for (int field = 0; field < FIELDS; field++) {
+                    if (fields[doc][field].isEmpty()) {
+                        continue;
+                    }
+                    for (String gram : trigrams(" " + fields[doc][field] + " ")) {
+                        postingLists.computeIfAbsent(gram, k -> new ArrayList<>()).add(doc * FIELDS + field);
+                    }
+                }
+                String name = fields[doc][NAME];
+                if (!name.isEmpty()) {
+                    Set<String> keys = new LinkedHashSet<>(List.of(name.split(" ")));
+                    keys.add(name);
+                    for (String key : keys) {
+                        wordLists.computeIfAbsent(key, k -> new ArrayList<>()).add(doc);
+                    }
+                }
+            }
+
+            Map<String, int[]> postings = new HashMap<>(postingLists.size() * 2);
+            postingLists.forEach((gram, list) -> postings.put(gram, toArray(list)));
+            NavigableMap<String, int[]> words = new TreeMap<>();
+            wordLists.forEach((word, list) -> words.put(word, toArray(list)));
+            return new Snapshot(ids, names, fields, postings, words);
+        }
+
+        List<String> containsSearch(String query, int limit) {
+            TopK top = new TopK(limit);
+            for (int doc : candidatesFor(query)) {
+                int score = 0;
+                for (int field = 0; field < FIELDS; field++) {
+                    String text = fields[doc][field];
+                    int at = text.indexOf(query);
+                    if (at < 0) {
+                        continue;
+                    }
+                    score += FIELD_WEIGHTS[field] * 10;
+                    if (at == 0) {
+                        score += FIELD_WEIGHTS[field] * 5;
+                    } else if (text.charAt(at - 1) == ' ') {
+                        score += FIELD_WEIGHTS[field] * 2;
+                    }
+                }
+                if (score > 0) {
+                    top.offer(doc, score);
+                }
+            }
+            return top.result(ids);
+        }
+
+        // Docs having every trigram of the query, ascending; postings are intersected shortest first
+        private int[] candidatesFor(String query) {
+            Set<String> grams = trigrams(query);
+            if (grams.isEmpty()) {
+                return shortQueryCandidates(query);
+            }
+            List<int[]> lists = new ArrayList<>(grams.size());
+            for (String gram : grams) {
+                int[] posting = postings.get(gram);
+                if (posting == null) {
+                    return new int[0];
+                }
+                lists.add(posting);
+            }
+            lists.sort(Comparator.comparingInt(posting -> posting.length));
+            int[] docs = docsOf(lists.get(0));
+            for (int i = 1; i < lists.size() && docs.length > 0; i++) {
+                docs = intersect(docs, lists.get(i));
+            }
+            return docs;
+        }
+
+        // One or two characters: every field text is indexed padded with spaces, so any field
+        // containing the query has a trigram containing it
+        private int[] shortQueryCandidates(String query) {
+            BitSet docs = new BitSet(ids.length);
+            for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+                if (entry.getKey().contains(query)) {
+                    for (int posting : entry.getValue()) {
+                        docs.set(posting / FIELDS);
+                    }
+                }
+            }
+            return docs.stream().toArray();
+        }
+
+        // Postings are sorted by doc * FIELDS + field, so their docs come out ascending
+        private static int[] docsOf(int[] posting) {
+            int[] docs = new int[posting.length];
+            int size = 0;
+            for (int entry : posting) {
+                int doc = entry / FIELDS;
+                if (size == 0 || docs[size - 1] != doc) {
+                    docs[size++] = doc;
+                }
+            }
+            return Arrays.copyOf(docs, size);
+        }
+
+        private static int[] intersect(int[] docs, int[] posting) {
+            int[] kept = new int[docs.length];
+            int size = 0;
+            int p = 0;
+            for (int doc : docs) {
+                while (p < posting.length && posting[p] / FIELDS < doc) {
+                    p++;
+                }
+                if (p < posting.length && posting[p] / FIELDS == doc) {
+                    kept[size++] = doc;
+                }
+            }
+            return Arrays.copyOf(kept, size);
+        }
+
+        List<String> fuzzySearch(String query, int limit) {
+            Set<String> grams = trigrams(" " + query + " ");
+            int[] shared = new int[ids.length * FIELDS];
+            for (String gram : grams) {
+                int[] posting = postings.get(gram);
+                if (posting != null) {
+                    for (int entry : posting) {
+                        shared[entry]++;
+                    }
+                }
+            }
+            TopK top = new TopK(limit);
+            for (int doc = 0; doc < ids.length; doc++) {
+                double score = 0;
+                for (int field = 0; field < FIELDS; field++) {
+                    double similarity = (double) shared[doc * FIELDS + field] / grams.size();
+                    if (similarity >= FUZZY_THRESHOLD) {
+                        score += similarity * FIELD_WEIGHTS[field];
+                    }
+                }
+                if (score > 0) {
+                    top.offer(doc, score);
+                }
+            }
+            return top.result(ids);
+        }
+
+        List<String> autocomplete(String prefix, int limit) {
+            Map<Integer, Boolean> matches = new LinkedHashMap<>();
+            for (Map.Entry<String, int[]> entry : words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+                for (int doc : entry.getValue()) {
+                    matches.merge(doc, fields[doc][NAME].startsWith(prefix), Boolean::logicalOr);
+                }
+            }
+            // Whole-name prefix matches first, then alphabetical
+            return matches.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Boolean>comparingByValue().reversed()
+                    .thenComparing(e -> fields[e.getKey()][NAME]))
+                .map(e -> names[e.getKey()])
+                .distinct()
+                .limit(limit)
+                .toList();
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+
+    // Bounded min-heap keeping the K best scored docs
+    private static final class TopK {
+        private final int limit;
+        private final PriorityQueue<double[]> heap =
+            new PriorityQueue<>(Comparator.comparingDouble((double[] e) -> e[1]).thenComparingDouble(e -> -e[0]));
+
+        TopK(int limit) {
+            this.limit = limit;
+        }
+
+        void offer(int doc, double score) {
+            heap.offer(new double[] {doc, score});
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<String> result(String[] ids) {
+            List<double[]> entries = new ArrayList<>(heap);
+            entries.sort(heap.comparator().reversed());
+            List<String> result = new ArrayList<>(entries.size());
+            for (double[] entry : entries) {
+                result.add(ids[(int) entry[0]]);
+            }
+            return result;
+        }
+    }
+}
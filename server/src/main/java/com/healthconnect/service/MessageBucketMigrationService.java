@@ -0,0 +1,134 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Message;
+import com.healthconnect.model.MessageBucket;
+import com.healthconnect.repository.MessageRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One-shot job that copies the messages collection into message_buckets.
+ *
+ * Messages are read with a cursor in batches of messages.bucket.migration-batch-size,
+ * so memory stays flat no matter how large the collection is. Each batch first
+ * looks up which of its ids are already bucketed and skips them, so the job can
+ * be re-run or resumed after a crash without duplicating messages. The source
+ * documents are left in place so the storage mode can be switched back.
+ */
+@Service
+public class MessageBucketMigrationService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MessageStorageService messageStorageService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Value("${messages.bucket.migration-batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong migrated = new AtomicLong();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+
+    // Start the migration in the background; false if one is already running
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        migrated.set(0);
+        startedAt = Instant.now();
+        finishedAt = null;
+        lastError = null;
+        Thread.ofVirtual().name("message-rebucket").start(this::run);
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("migrated", migrated.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("error", lastError);
+        return status;
+    }
+
+    private void run() {
+        int maxBucketSize = messageStorageService.getMaxBucketSize();
+        List<Message> batch = new ArrayList<>(batchSize);
+        try (Stream<Message> messages = mongoTemplate.stream(new Query(), Message.class)) {
+            messages.map(this::normalize).filter(message -> message.getTimestamp() != null).forEach(message -> {
+                batch.add(message);
+                if (batch.size() >= batchSize) {
+                    flush(batch, maxBucketSize);
+                }
+            });
+            flush(batch, maxBucketSize);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            System.err.println("Message re-bucketing failed: " + e.getMessage());
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void flush(List<Message> batch, int maxBucketSize) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> alreadyBucketed = bucketedIds(batch);
+        for (Message message : batch) {
+            if (!alreadyBucketed.contains(message.getId())) {
+                messageRepository.appendToBucket(message, maxBucketSize);
+                migrated.incrementAndGet();
+            }
+        }
+        batch.clear();
+    }
+
+    private Set<String> bucketedIds(List<Message> batch) {
+        List<Object> ids = batch.stream()
+            .map(message -> ObjectId.isValid(message.getId()) ? (Object) new ObjectId(message.getId()) : message.getId())
+            .toList();
+        // Distinct over the matched buckets returns all of their ids, which is a superset of the ones we asked about
+        return mongoTemplate.findDistinct(new Query(Criteria.where("messages._id").in(ids)),
+                "messages._id", MessageBucket.class, Object.class)
+            .stream()
+            .map(String::valueOf)
+            .collect(Collectors.toSet());
+    }
+
+    // Messages written before conversation keys and typed timestamps existed
+    private Message normalize(Message message) {
+        if (message.getTimestamp() == null && ObjectId.isValid(message.getId())) {
+            message.setTimestamp(new ObjectId(message.getId()).getDate().toInstant());
+        }
+        if (message.getConversationKey() == null) {
+            message.setConversationKey(Message.conversationKey(message.getSenderId(), message.getReceiverId()));
+        }
+        return message;
+    }
+}
@@ -0,0 +1,99 @@
+package com.healthconnect.service;
+
+import com.healthconnect.config.LenientInstantDeserializer;
+import com.healthconnect.model.Message;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Brings messages saved before the indexed conversation query up to date: the
+ * client-supplied string timestamp becomes a BSON date and conversationKey is filled in,
+ * so the conversation index sees every message.
+ *
+ * Only documents still missing either are touched, so running it on every startup is
+ * cheap once the data is converted. Runs before the other message/inbox backfills.
+ */
+@Service
+public class MessageMigrationService {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        Query legacy = new Query(new Criteria().orOperator(
+            Criteria.where("timestamp").type(2),
+            Criteria.where("timestamp").exists(false),
+            Criteria.where("conversationKey").exists(false)));
+        legacy.fields().include("timestamp").include("senderId").include("receiverId");
+
+        String collection = mongoTemplate.getCollectionName(Message.class);
+        BulkOperations bulk = null;
+        int pending = 0;
+        long converted = 0;
+        try (Stream<Document> messages = mongoTemplate.stream(legacy, Document.class, collection)) {
+            for (Document message : (Iterable<Document>) messages::iterator) {
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+                Object id = message.get("_id");
+                Instant timestamp = toInstant(message.get("timestamp"));
+                if (timestamp == null) {
+                    timestamp = id instanceof ObjectId objectId ? objectId.getDate().toInstant() : Instant.EPOCH;
+                }
+                Update update = new Update().set("timestamp", Date.from(timestamp));
+                String senderId = message.getString("senderId");
+                String receiverId = message.getString("receiverId");
+                // Null (not missing) for messages without both participants, so they are not picked up again
+                update.set("conversationKey", senderId != null && receiverId != null
+                    ? Message.conversationKey(senderId, receiverId) : null);
+                bulk.updateOne(new Query(Criteria.where("_id").is(id)), update);
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    converted += pending;
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+            converted += pending;
+        }
+        if (converted > 0) {
+            System.out.println("Backfilled timestamp/conversationKey of " + converted + " legacy messages");
+        }
+    }
+
+    private Instant toInstant(Object value) {
+        if (value instanceof Date date) {
+            return date.toInstant();
+        }
+        if (value instanceof String text) {
+            try {
+                return LenientInstantDeserializer.parse(text);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Message;
+import com.healthconnect.repository.MessageRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Chooses between one document per message ("document", the default) and
+ * per-conversation, per-day buckets ("bucketed") based on messages.storage.mode.
+ */
+@Service
+public class MessageStorageService {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${messages.storage.mode:document}")
+    private String storageMode;
+
+    @Value("${messages.bucket.max-size:200}")
+    private int maxBucketSize;
+
+    public boolean isBucketed() {
+        return "bucketed".equalsIgnoreCase(storageMode);
+    }
+
+    public int getMaxBucketSize() {
+        return maxBucketSize;
+    }
+
+    public Message save(Message message) {
+        if (isBucketed()) {
+            message.setId(new ObjectId().toHexString());
+            messageRepository.appendToBucket(message, maxBucketSize);
+            return message;
+        }
+        return messageRepository.save(message);
+    }
+
+    // Newest-first page of a conversation, older than the (before, beforeId) cursor
+    public List<Message> findConversation(String conversationKey, Instant before, String beforeId, int limit) {
+        if (isBucketed()) {
+            return messageRepository.findBucketedConversation(conversationKey, before, beforeId, limit);
+        }
+        return messageRepository.findConversationPage(conversationKey, before, beforeId, limit);
+    }
+
+    // Oldest-first messages sent to or by a user after the (since, sinceId) cursor
+    public List<Message> findSince(String userId, Instant since, String sinceId, int limit) {
+        if (isBucketed()) {
+            return messageRepository.findBucketedSince(userId, since, sinceId, limit);
+        }
+        return messageRepository.findParticipantSince(userId, since, sinceId, limit);
+    }
+
+    public List<Message> findAll() {
+        if (isBucketed()) {
+            try (Stream<Message> messages = messageRepository.streamBucketed()) {
+                return messages.toList();
+            }
+        }
+        return messageRepository.findAll();
+    }
+
+    // Cursor over every message; the caller closes it
+    public Stream<Message> streamAll() {
+        if (isBucketed()) {
+            return messageRepository.streamBucketed();
+        }
+        return mongoTemplate.stream(new Query(), Message.class);
+    }
+
+    public void deleteById(String id) {
+        // Messages kept in the collection from before re-bucketing are deleted too
+        if (isBucketed()) {
+            messageRepository.deleteFromBucket(id);
+        }
+        messageRepository.deleteById(id);
+    }
+}
@@ -0,0 +1,181 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes newly sent messages to the sender and receiver.
+ *
+ * Every SSE connection owns a bounded queue drained by its own task, so a slow
+ * client only ever holds up itself. When a queue overflows the connection is
+ * closed and the client is expected to reconnect and catch up through the
+ * long-poll endpoint using the timestamp and id of the last message it saw.
+ */
+@Service
+public class MessageStreamService {
+
+    @Autowired
+    private MessageStorageService messageStorageService;
+
+    @Value("${messages.stream.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${messages.stream.timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${messages.poll.max-batch:200}")
+    private int maxPollBatch;
+
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<DeferredResult<List<Message>>>> pollers = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Open an SSE stream for a user
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Subscription subscription = new Subscription(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+
+        subscriptions.compute(userId, (k, set) -> {
+            Set<Subscription> userSubscriptions = set != null ? set : ConcurrentHashMap.newKeySet();
+            userSubscriptions.add(subscription);
+            return userSubscriptions;
+        });
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(e -> remove(subscription));
+        return emitter;
+    }
+
+    /**
+     * Long-poll fallback: completes immediately when messages newer than the cursor exist,
+     * otherwise waits until one is published or the poll times out (empty list).
+     */
+    public DeferredResult<List<Message>> poll(String userId, Instant since, String sinceId, long timeoutMs) {
+        DeferredResult<List<Message>> result = new DeferredResult<>(timeoutMs, List.of());
+        result.onCompletion(() -> pollers.computeIfPresent(userId, (k, set) -> {
+            set.remove(result);
+            return set.isEmpty() ? null : set;
+        }));
+
+        // Register before querying so a message saved in between is not missed
+        pollers.compute(userId, (k, set) -> {
+            Set<DeferredResult<List<Message>>> waiting = set != null ? set : ConcurrentHashMap.newKeySet();
+            waiting.add(result);
+            return waiting;
+        });
+        // Without a cursor the client only wants what arrives from now on, not the history
+        if (since != null) {
+            List<Message> pending = findSince(userId, since, sinceId);
+            if (!pending.isEmpty()) {
+                result.setResult(pending);
+            }
+        }
+        return result;
+    }
+
+    // Messages sent to or by the user after the cursor, oldest first
+    public List<Message> findSince(String userId, Instant since, String sinceId) {
+        return messageStorageService.findSince(userId, since, sinceId, maxPollBatch);
+    }
+
+    // Deliver a freshly saved message to both participants
+    public void publish(Message message) {
+        deliver(message.getReceiverId(), message);
+        if (!message.getSenderId().equals(message.getReceiverId())) {
+            deliver(message.getSenderId(), message);
+        }
+    }
+
+    private void deliver(String userId, Message message) {
+        Set<DeferredResult<List<Message>>> waiting = pollers.get(userId);
+        if (waiting != null) {
+            for (DeferredResult<List<Message>> poller : waiting) {
+                poller.setResult(List.of(message));
+            }
+        }
+
+        Set<Subscription> userSubscriptions = subscriptions.get(userId);
+        if (userSubscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : userSubscriptions) {
+            if (!subscription.queue.offer(message)) {
+                // Client is too slow; drop it rather than buffer without bound
+                subscription.emitter.complete();
+                remove(subscription);
+                continue;
+            }
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void scheduleDrain(Subscription subscription) {
+        if (subscription.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            Message next;
+            while ((next = subscription.queue.poll()) != null) {
+                subscription.emitter.send(SseEmitter.event()
+                    .id(next.getTimestamp().toString())
+                    .name("message")
+                    .data(next));
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscription.emitter.completeWithError(e);
+            remove(subscription);
+            return;
+        } finally {
+            subscription.draining.set(false);
+        }
+        // A publish may have raced with the end of the loop
+        if (!subscription.queue.isEmpty()) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.userId, (k, set) -> {
+            set.remove(subscription);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private static final class Subscription {
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Message> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscription(String userId, SseEmitter emitter, BlockingQueue<Message> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Payment;
+import com.healthconnect.model.RevenueRollup;
+import com.healthconnect.model.Wallet;
+import com.healthconnect.model.WalletLedgerEntry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts rupee doubles stored before money was kept in paise into int64 paise
+ * (payments.amount, wallets.balance, wallet_ledger.amount/balanceAfter,
+ * revenue_rollups.revenue).
+ *
+ * Each collection is one server-side pipeline update over the documents still holding
+ * the old field, so it is a no-op once the data is converted. The converted amount is
+ * added to any paise value already there, since the outbox dispatcher can credit a
+ * wallet before this runs.
+ */
+@Service
+public class MoneyMigrationService {
+
+    private static final Decimal128 HALF = new Decimal128(new BigDecimal("0.5"));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        long converted = convert(Payment.class, "amount", "amountPaise")
+            + convert(Wallet.class, "balance", "balancePaise")
+            + convert(WalletLedgerEntry.class, "amount", "amountPaise")
+            + convert(WalletLedgerEntry.class, "balanceAfter", "balanceAfterPaise")
+            + convert(RevenueRollup.class, "revenue", "revenuePaise");
+        if (converted > 0) {
+            System.out.println("Converted " + converted + " stored amounts from rupees to paise");
+        }
+    }
+
+    private long convert(Class<?> type, String rupeeField, String paiseField) {
+        Document filter = new Document(rupeeField, new Document("$exists", true));
+        // Decimal128 keeps the scaling exact; rounding is half away from zero like Money.ofRupees
+        // ($round would round half to even)
+        Document scaled = new Document("$multiply", List.of(
+            new Document("$toDecimal", new Document("$ifNull", List.of("$" + rupeeField, 0))), 100));
+        Document rounded = new Document("$cond", List.of(
+            new Document("$gte", List.of(scaled, 0)),
+            new Document("$floor", new Document("$add", List.of(scaled, HALF))),
+            new Document("$ceil", new Document("$subtract", List.of(scaled, HALF)))));
+        // Added to, not replacing, the paise field: writers that started before the migration may already have $inc'ed it
+        Document paise = new Document("$add", List.of(
+            new Document("$ifNull", List.of("$" + paiseField, 0L)),
+            new Document("$toLong", rounded)));
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$set", new Document(paiseField, paise)));
+        pipeline.add(new Document("$unset", rupeeField));
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(type))
+            .updateMany(filter, pipeline)
+            .getModifiedCount();
+    }
+}
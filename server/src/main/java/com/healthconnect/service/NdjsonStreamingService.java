@@ -0,0 +1,74 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a collection to the response as newline-delimited JSON straight from a
+ * Mongo cursor, so memory use does not depend on the collection size.
+ *
+ * If the client goes away the next write fails, which ends the loop and closes
+ * the cursor on the server.
+ */
+@Service
+public class NdjsonStreamingService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${export.ndjson.cursor-batch-size:500}")
+    private int cursorBatchSize;
+
+    @Value("${export.ndjson.flush-every:200}")
+    private int flushEvery;
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(Class<T> type) {
+        return stream(new Query(), type);
+    }
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(Query query, Class<T> type) {
+        query.cursorBatchSize(cursorBatchSize);
+        return stream(() -> mongoTemplate.stream(query, type), type);
+    }
+
+    // For sources that are not a plain query on one collection; the stream is opened per request and closed after
+    public <T> ResponseEntity<StreamingResponseBody> stream(Supplier<Stream<T>> source, Class<T> type) {
+        StreamingResponseBody body = out -> {
+            try (Stream<T> documents = source.get();
+                 SequenceWriter writer = objectMapper.writerFor(type)
+                     .withRootValueSeparator("\n")
+                     .writeValues(out)) {
+                Iterator<T> cursor = documents.iterator();
+                long written = 0;
+                while (cursor.hasNext()) {
+                    writer.write(cursor.next());
+                    if (++written % flushEvery == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.flush();
+                if (written > 0) {
+                    out.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+}
@@ -0,0 +1,96 @@
+package com.healthconnect.service;
+
+import com.healthconnect.config.LenientInstantDeserializer;
+import com.healthconnect.model.MedicineOrder;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Converts orderDate/deliveryDate of orders saved before they were typed
+ * ("yyyy-MM-dd HH:mm:ss" / "yyyy-MM-dd" strings) into BSON dates, so the
+ * orderDate indexes and range filters see every order.
+ *
+ * Only documents still holding a string are touched, so running it on every
+ * startup is cheap once the data is converted.
+ */
+@Service
+public class OrderDateMigrationService {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        Query legacy = new Query(new Criteria().orOperator(
+            Criteria.where("orderDate").type(2),
+            Criteria.where("orderDate").exists(false),
+            Criteria.where("deliveryDate").type(2)));
+        legacy.fields().include("orderDate").include("deliveryDate");
+
+        String collection = mongoTemplate.getCollectionName(MedicineOrder.class);
+        BulkOperations bulk = null;
+        int pending = 0;
+        long converted = 0;
+        try (Stream<Document> orders = mongoTemplate.stream(legacy, Document.class, collection)) {
+            for (Document order : (Iterable<Document>) orders::iterator) {
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+                Object id = order.get("_id");
+                Instant orderDate = toInstant(order.get("orderDate"));
+                if (orderDate == null) {
+                    orderDate = id instanceof ObjectId objectId ? objectId.getDate().toInstant() : Instant.EPOCH;
+                }
+                Update update = new Update().set("orderDate", Date.from(orderDate));
+                if (order.containsKey("deliveryDate")) {
+                    Instant deliveryDate = toInstant(order.get("deliveryDate"));
+                    update.set("deliveryDate", deliveryDate != null ? Date.from(deliveryDate) : null);
+                }
+                bulk.updateOne(new Query(Criteria.where("_id").is(id)), update);
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    converted += pending;
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+            converted += pending;
+        }
+        if (converted > 0) {
+            System.out.println("Converted dates of " + converted + " legacy orders");
+        }
+    }
+
+    private Instant toInstant(Object value) {
+        if (value instanceof Date date) {
+            return date.toInstant();
+        }
+        if (value instanceof String text) {
+            try {
+                return LenientInstantDeserializer.parse(text);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
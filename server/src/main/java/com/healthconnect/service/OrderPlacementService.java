@@ -0,0 +1,71 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.OrderStatus;
+import com.healthconnect.model.StatusChange;
+import com.healthconnect.repository.OrderRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+public class OrderPlacementService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderPricingService orderPricingService;
+
+    @Autowired
+    private FulfillmentService fulfillmentService;
+
+    /**
+     * Price the order from the catalog, reserve stock for every item, save, and
+     * queue it for fulfillment. The reservation is undone if the save fails.
+     */
+    public MedicineOrder place(MedicineOrder order, Double clientTotal) {
+        orderPricingService.price(order, clientTotal);
+
+        // The reservation is keyed by order ID, so the ID is assigned before anything is written
+        order.setId(new ObjectId().toHexString());
+        stockReservationService.reserve(order.getId(), order.getItems());
+        // Every order starts PLACED, whatever the client sent; later statuses only come from transitions
+        order.setStatus(OrderStatus.PLACED.name());
+        order.setStatusHistory(new ArrayList<>(List.of(new StatusChange(order.getStatus(), Instant.now()))));
+        MedicineOrder saved;
+        try {
+            saved = orderRepository.save(order);
+        } catch (RuntimeException e) {
+            stockReservationService.release(order.getId());
+            throw e;
+        }
+        fulfillmentService.enqueue(saved.getId());
+        return saved;
+    }
+
+    // Keep stock held by an order in sync with its new status
+    public void onStatusChanged(String orderId, String status) {
+        if ("CANCELLED".equals(status)) {
+            stockReservationService.release(orderId);
+        } else if (status != null && !"PLACED".equals(status)) {
+            stockReservationService.commit(orderId);
+        }
+    }
+
+    public void onStatusChanged(Collection<String> orderIds, String status) {
+        if ("CANCELLED".equals(status)) {
+            stockReservationService.releaseAll(orderIds);
+        } else if (status != null && !"PLACED".equals(status)) {
+            stockReservationService.commitAll(orderIds);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Medicine;
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.Money;
+import com.healthconnect.model.OrderItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prices orders from the catalog instead of trusting client prices.
+ *
+ * All medicines of a cart are fetched in one go through the catalog cache
+ * (one findAllById for whatever is not cached), and all arithmetic is done
+ * in integer paise.
+ */
+@Service
+public class OrderPricingService {
+
+    @Autowired
+    private MedicineCatalogCache medicineCatalogCache;
+
+    // Sets catalog prices on every item and the order total; rejects a disagreeing client total
+    public void price(MedicineOrder order, Double clientTotal) {
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+        Set<String> medicineIds = new LinkedHashSet<>();
+        for (OrderItem item : order.getItems()) {
+            if (item.getMedicineId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Every item needs a medicineId and a positive quantity");
+            }
+            medicineIds.add(item.getMedicineId());
+        }
+
+        Map<String, Medicine> catalog = medicineCatalogCache.getAllById(medicineIds);
+        long totalPaise = 0;
+        for (OrderItem item : order.getItems()) {
+            Medicine medicine = catalog.get(item.getMedicineId());
+            if (medicine == null || medicine.getPrice() == null) {
+                throw new IllegalArgumentException("Unknown medicine: " + item.getMedicineId());
+            }
+            long unitPaise = Money.ofRupees(medicine.getPrice());
+            totalPaise = Math.addExact(totalPaise, Math.multiplyExact(unitPaise, item.getQuantity().longValue()));
+
+            item.setPrice(medicine.getPrice());
+            if (item.getMedicineName() == null) {
+                item.setMedicineName(medicine.getName());
+            }
+        }
+
+        if (clientTotal != null && Money.ofRupees(clientTotal) != totalPaise) {
+            throw new PriceMismatchException(totalPaise, Money.ofRupees(clientTotal));
+        }
+        order.setTotalAmount(Money.toRupees(totalPaise));
+    }
+
+    public static class PriceMismatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long expectedPaise;
+        private final long submittedPaise;
+
+        public PriceMismatchException(long expectedPaise, long submittedPaise) {
+            super("Order total does not match current prices");
+            this.expectedPaise = expectedPaise;
+            this.submittedPaise = submittedPaise;
+        }
+
+        public double getExpectedTotal() { return Money.toRupees(expectedPaise); }
+        public double getSubmittedTotal() { return Money.toRupees(submittedPaise); }
+    }
+}
@@ -1,20 +1,19 @@
 package com.healthconnect.service;
 
+import com.healthconnect.model.OutboxEvent;
 import com.healthconnect.model.Payment;
 import com.healthconnect.repository.PaymentRepository;
+import com.healthconnect.repository.PaymentRepositoryCustom;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class PaymentService {
@@ -23,7 +22,27 @@ public class PaymentService {
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private WalletService walletService;
+    private WalletDistributionDispatcher walletDistributionDispatcher;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private FulfillmentQueue fulfillmentQueue;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private PaymentSignatureVerifier paymentSignatureVerifier;
+
+    @Value("${payments.statistics.snapshot-enabled:false}")
+    private boolean statisticsSnapshotEnabled;
+
+    private final AtomicReference<Map<String, Object>> statisticsSnapshot = new AtomicReference<>();
 
     @Value("${razorpay.key.id:rzp_test_1234567890}")
     private String razorpayKeyId;
@@ -44,7 +63,7 @@ public class PaymentService {
 
             // Create Razorpay order
             Map<String, Object> orderData = new HashMap<>();
-            orderData.put("amount", (int)(payment.getAmount() * 100)); // Convert to paise
+            orderData.put("amount", payment.getAmountPaise()); // Razorpay takes paise
             orderData.put("currency", payment.getCurrency());
             orderData.put("receipt", "receipt_" + savedPayment.getId());
             
@@ -86,44 +105,39 @@ public class PaymentService {
 
     // Verify payment signature
     public boolean verifyPaymentSignature(String orderId, String paymentId, String signature) {
-        try {
-            String payload = orderId + "|" + paymentId;
-            String computedSignature = hmacSha256(payload, razorpayKeySecret);
-            return computedSignature.equals(signature);
-        } catch (Exception e) {
-            return false;
-        }
+        return paymentSignatureVerifier.verifyPayment(orderId, paymentId, signature);
     }
 
     // Update payment status
     public Payment updatePaymentStatus(String paymentDbId, String paymentId, String status, Map<String, Object> paymentDetails) {
-        Optional<Payment> optionalPayment = paymentRepository.findById(paymentDbId);
-        if (optionalPayment.isPresent()) {
-            Payment payment = optionalPayment.get();
-            payment.setPaymentId(paymentId);
-            payment.setPaymentStatus(status);
-            
-            if (paymentDetails != null) {
-                Payment.PaymentDetails details = new Payment.PaymentDetails();
-                details.setBankName((String) paymentDetails.get("bank"));
-                details.setCardType((String) paymentDetails.get("card_type"));
-                details.setCardLast4((String) paymentDetails.get("last4"));
-                details.setUpiId((String) paymentDetails.get("vpa"));
-                details.setWalletName((String) paymentDetails.get("wallet"));
-                details.setTransactionId((String) paymentDetails.get("acquirer_data"));
-                payment.setPaymentDetails(details);
-            }
+        Payment.PaymentDetails details = null;
+        if (paymentDetails != null) {
+            details = new Payment.PaymentDetails();
+            details.setBankName((String) paymentDetails.get("bank"));
+            details.setCardType((String) paymentDetails.get("card_type"));
+            details.setCardLast4((String) paymentDetails.get("last4"));
+            details.setUpiId((String) paymentDetails.get("vpa"));
+            details.setWalletName((String) paymentDetails.get("wallet"));
+            details.setTransactionId((String) paymentDetails.get("acquirer_data"));
+        }
 
-            Payment updatedPayment = paymentRepository.save(payment);
-            
-            // Distribute payment to doctor/pharmacy wallet after successful payment
-            if ("SUCCESS".equals(status)) {
-                walletService.distributePayment(updatedPayment);
-            }
-            
-            return updatedPayment;
+        // Wallet distribution is attached in the same write as SUCCESS and delivered in the background
+        OutboxEvent outbox = "SUCCESS".equals(status)
+            ? OutboxEvent.pending(WalletDistributionDispatcher.DISTRIBUTE_PAYMENT)
+            : null;
+        // Only the gateway fields are written, so the rollup claim set by other writers survives
+        Payment updatedPayment = paymentRepository.updateStatus(paymentDbId, paymentId, status, details, outbox);
+        if (updatedPayment == null) {
+            throw new RuntimeException("Payment not found with ID: " + paymentDbId);
         }
-        throw new RuntimeException("Payment not found with ID: " + paymentDbId);
+
+        if ("SUCCESS".equals(status)) {
+            walletDistributionDispatcher.wake();
+            commitStock(updatedPayment);
+            revenueRollupService.record(updatedPayment);
+        }
+
+        return updatedPayment;
     }
 
     // Get patient payments
@@ -147,19 +161,26 @@ public class PaymentService {
             if (payment.getCurrency() == null || payment.getCurrency().isEmpty()) {
                 payment.setCurrency("INR");
             }
-            if (payment.getStatus() == null || payment.getStatus().isEmpty()) {
-                payment.setStatus("COMPLETED");
+            if (payment.getPaymentStatus() == null || payment.getPaymentStatus().isEmpty()) {
+                payment.setPaymentStatus("COMPLETED");
             }
             
-            Payment savedPayment = paymentRepository.save(payment);
+            boolean successful = "COMPLETED".equals(payment.getPaymentStatus()) || "SUCCESS".equals(payment.getPaymentStatus());
+            // Wallet distribution is recorded in the same write and delivered in the background
+            if (successful && payment.getOutbox() == null) {
+                payment.setOutbox(OutboxEvent.pending(WalletDistributionDispatcher.DISTRIBUTE_PAYMENT));
+            }
+            // Always a new payment; insert so an existing document is never overwritten wholesale
+            Payment savedPayment = paymentRepository.insert(payment);
             
-            // Distribute payment to doctor/pharmacy wallet after successful payment
-            if ("COMPLETED".equals(payment.getStatus()) || "SUCCESS".equals(payment.getStatus())) {
+            if (successful) {
+                walletDistributionDispatcher.wake();
                 try {
-                    walletService.distributePayment(savedPayment);
+                    commitStock(savedPayment);
+                    revenueRollupService.record(savedPayment);
                 } catch (Exception e) {
                     // Log error but don't fail the payment save
-                    System.err.println("Error distributing payment: " + e.getMessage());
+                    System.err.println("Error finishing payment: " + e.getMessage());
                 }
             }
             
@@ -187,35 +208,61 @@ public class PaymentService {
         return invoice;
     }
 
-    // Get payment statistics
+    // Get payment statistics (the scheduled snapshot when enabled, otherwise computed now)
     public Map<String, Object> getPaymentStatistics() {
+        if (statisticsSnapshotEnabled) {
+            Map<String, Object> snapshot = statisticsSnapshot.get();
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return computePaymentStatistics();
+    }
+
+    @Scheduled(fixedDelayString = "${payments.statistics.snapshot-refresh-ms:60000}")
+    public void refreshStatisticsSnapshot() {
+        if (statisticsSnapshotEnabled) {
+            statisticsSnapshot.set(computePaymentStatistics());
+        }
+    }
+
+    // Revenue and number of successful payments created in [startDate, endDate]
+    public PaymentRepositoryCustom.RevenueTotal getRevenueBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        return paymentRepository.sumSuccessfulRevenue(startDate, endDate);
+    }
+
+    private Map<String, Object> computePaymentStatistics() {
+        PaymentRepositoryCustom.PaymentTotals totals = paymentRepository.aggregateTotals();
         Map<String, Object> stats = new HashMap<>();
         
-        stats.put("totalPayments", paymentRepository.count());
-        stats.put("successfulPayments", paymentRepository.countByPaymentStatus("SUCCESS"));
-        stats.put("pendingPayments", paymentRepository.countByPaymentStatus("PENDING"));
-        stats.put("failedPayments", paymentRepository.countByPaymentStatus("FAILED"));
-        stats.put("consultationPayments", paymentRepository.countByPaymentType("CONSULTATION"));
-        stats.put("medicinePayments", paymentRepository.countByPaymentType("MEDICINE"));
-        
-        // Calculate total revenue
-        List<Payment> successfulPayments = paymentRepository.findByPaymentStatusOrderByCreatedAtDesc("SUCCESS");
-        double totalRevenue = successfulPayments.stream()
-                .mapToDouble(Payment::getAmount)
-                .sum();
-        stats.put("totalRevenue", totalRevenue);
+        stats.put("totalPayments", totals.total());
+        stats.put("successfulPayments", totals.byStatus().getOrDefault("SUCCESS", 0L));
+        stats.put("pendingPayments", totals.byStatus().getOrDefault("PENDING", 0L));
+        stats.put("failedPayments", totals.byStatus().getOrDefault("FAILED", 0L));
+        stats.put("consultationPayments", totals.byType().getOrDefault("CONSULTATION", 0L));
+        stats.put("medicinePayments", totals.byType().getOrDefault("MEDICINE", 0L));
+        stats.put("totalRevenue", totals.revenue());
+        stats.put("generatedAt", LocalDateTime.now());
         
         return stats;
     }
 
     // Helper methods
+    // A paid medicine order keeps its reserved stock, and its fulfillment job stops waiting for payment
+    private void commitStock(Payment payment) {
+        if (payment.getMedicineOrderId() != null) {
+            stockReservationService.commit(payment.getMedicineOrderId());
+            fulfillmentQueue.wake(payment.getMedicineOrderId());
+        }
+    }
+
     private String generateInvoiceNumber() {
-        return "INV-" + System.currentTimeMillis();
+        return idGenerator.nextInvoiceNumber();
     }
 
     private Map<String, Object> createMockRazorpayOrder(Map<String, Object> orderData) {
         Map<String, Object> order = new HashMap<>();
-        order.put("id", "order_" + System.currentTimeMillis());
+        order.put("id", idGenerator.nextId("order_"));
         order.put("entity", "order");
         order.put("amount", orderData.get("amount"));
         order.put("amount_paid", 0);
@@ -237,17 +284,4 @@ public class PaymentService {
         
         return prefill;
     }
-
-    private String hmacSha256(String data, String key) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        
-        StringBuilder result = new StringBuilder();
-        for (byte b : hash) {
-            result.append(String.format("%02x", b));
-        }
-        return result.toString();
-    }
 }
\ No newline at end of file
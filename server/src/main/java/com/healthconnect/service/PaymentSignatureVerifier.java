@@ -0,0 +1,150 @@
+package com.healthconnect.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * HMAC-SHA256 checks for Razorpay payment and webhook signatures.
+ *
+ * Each thread keeps its own initialised Mac plus scratch buffers, so a check
+ * allocates nothing on the common (ASCII IDs) path. The expected hex signature is
+ * decoded into bytes and compared with MessageDigest.isEqual, which takes the same
+ * time wherever the first mismatch is.
+ */
+@Service
+public class PaymentSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 32;
+
+    @Value("${razorpay.key.secret:razorpay_secret_key}")
+    private String keySecret;
+
+    // Razorpay signs webhooks with a separate secret; falls back to the key secret when unset
+    @Value("${razorpay.webhook.secret:}")
+    private String webhookSecret;
+
+    private ThreadLocal<Scratch> paymentScratch;
+    private ThreadLocal<Scratch> webhookScratch;
+
+    @PostConstruct
+    void init() {
+        byte[] paymentKey = keySecret.getBytes(StandardCharsets.UTF_8);
+        byte[] webhookKey = (webhookSecret == null || webhookSecret.isEmpty() ? keySecret : webhookSecret)
+            .getBytes(StandardCharsets.UTF_8);
+        paymentScratch = ThreadLocal.withInitial(() -> new Scratch(paymentKey));
+        webhookScratch = ThreadLocal.withInitial(() -> new Scratch(webhookKey));
+    }
+
+    // Checkout signature: HMAC of "<orderId>|<paymentId>" with the key secret
+    public boolean verifyPayment(String orderId, String paymentId, String signature) {
+        if (orderId == null || paymentId == null) {
+            return false;
+        }
+        Scratch scratch = paymentScratch.get();
+        if (!scratch.decode(signature)) {
+            return false;
+        }
+        scratch.update(orderId);
+        scratch.mac.update((byte) '|');
+        scratch.update(paymentId);
+        return scratch.matches();
+    }
+
+    // Webhook signature: HMAC of the raw request body with the webhook secret
+    public boolean verifyWebhook(byte[] body, String signature) {
+        if (body == null) {
+            return false;
+        }
+        Scratch scratch = webhookScratch.get();
+        if (!scratch.decode(signature)) {
+            return false;
+        }
+        scratch.mac.update(body);
+        return scratch.matches();
+    }
+
+    // Results in input order; one thread-local lookup for the whole batch
+    public boolean[] verifyWebhooks(List<WebhookSignature> webhooks) {
+        boolean[] results = new boolean[webhooks.size()];
+        Scratch scratch = webhookScratch.get();
+        for (int i = 0; i < results.length; i++) {
+            WebhookSignature webhook = webhooks.get(i);
+            if (webhook.body() != null && scratch.decode(webhook.signature())) {
+                scratch.mac.update(webhook.body());
+                results[i] = scratch.matches();
+            }
+        }
+        return results;
+    }
+
+    public record WebhookSignature(byte[] body, String signature) {
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final byte[] expected = new byte[SIGNATURE_BYTES];
+        private final byte[] actual = new byte[SIGNATURE_BYTES];
+        private byte[] text = new byte[64];
+
+        Scratch(byte[] key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(new SecretKeySpec(key, ALGORITHM));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        }
+
+        // Lower- or upper-case hex of exactly 32 bytes into expected
+        boolean decode(String hex) {
+            if (hex == null || hex.length() != SIGNATURE_BYTES * 2) {
+                return false;
+            }
+            for (int i = 0; i < SIGNATURE_BYTES; i++) {
+                int high = Character.digit(hex.charAt(2 * i), 16);
+                int low = Character.digit(hex.charAt(2 * i + 1), 16);
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                expected[i] = (byte) ((high << 4) | low);
+            }
+            return true;
+        }
+
+        // UTF-8 bytes of the text; ASCII is copied through the reusable buffer
+        void update(String value) {
+            int length = value.length();
+            if (text.length < length) {
+                text = new byte[Math.max(length, text.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    mac.update(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                text[i] = (byte) c;
+            }
+            mac.update(text, 0, length);
+        }
+
+        // doFinal also resets the Mac for the next check
+        boolean matches() {
+            try {
+                mac.doFinal(actual, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return MessageDigest.isEqual(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Money;
+import com.healthconnect.model.Payment;
+import com.healthconnect.model.RevenueRollup;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Hourly and daily revenue per payment type and doctor in revenue_rollups.
+ *
+ * A successful payment is claimed once by setting Payment.rollupMarker where it is
+ * still unset, together with rollupPending. Each bucket $inc is guarded by the marker
+ * (the bucket records it in markers), and rollupPending is cleared once all buckets
+ * are done, so a claim left pending by a crash is finished by the next backfill without
+ * counting any bucket twice. Buckets are aligned to revenue.rollup.zone, and months
+ * are built by merging day buckets.
+ */
+@Service
+public class RevenueRollupService {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+    public static final String MONTH = "MONTH";
+    private static final String NO_DOCTOR = "-";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${revenue.rollup.zone:Asia/Kolkata}")
+    private String zoneName;
+
+    @Value("${revenue.rollup.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    // A claim still pending after this long is taken to be abandoned and finished by the backfill
+    @Value("${revenue.rollup.pending-timeout-ms:600000}")
+    private long pendingTimeoutMs;
+
+    private ZoneId zone;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final AtomicLong backfilled = new AtomicLong();
+    private volatile Instant backfillStartedAt;
+    private volatile Instant backfillFinishedAt;
+    private volatile String backfillError;
+
+    @PostConstruct
+    void init() {
+        zone = ZoneId.of(zoneName);
+    }
+
+    public static boolean isSuccessful(Payment payment) {
+        return "SUCCESS".equals(payment.getPaymentStatus()) || "COMPLETED".equals(payment.getPaymentStatus());
+    }
+
+    // Count a payment that just became successful; no-op if it was already counted
+    public void record(Payment payment) {
+        if (payment.getId() == null || !isSuccessful(payment) || payment.getAmountPaise() == null) {
+            return;
+        }
+        String marker = "live:" + new ObjectId().toHexString();
+        long claimed = mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(payment.getId()).and("rollupMarker").exists(false)),
+            claim(marker),
+            Payment.class).getModifiedCount();
+        if (claimed == 0) {
+            return;
+        }
+        payment.setRollupMarker(marker);
+        apply(marker, bucketsFor(payment), List.of(payment.getId()));
+    }
+
+    // Start counting every successful payment not yet in the rollups; false if already running
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        backfilled.set(0);
+        backfillStartedAt = Instant.now();
+        backfillFinishedAt = null;
+        backfillError = null;
+        Thread.ofVirtual().name("revenue-backfill").start(this::backfill);
+        return true;
+    }
+
+    public Map<String, Object> getBackfillStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", backfillRunning.get());
+        status.put("payments", backfilled.get());
+        status.put("startedAt", backfillStartedAt);
+        status.put("finishedAt", backfillFinishedAt);
+        status.put("error", backfillError);
+        return status;
+    }
+
+    /**
+     * Revenue per bucket in [from, to), oldest first.
+     * HOUR and DAY read their own buckets; MONTH merges day buckets. With split, every
+     * bucket is broken down by payment type and doctor.
+     */
+    public List<Map<String, Object>> series(Instant from, Instant to, String granularity, String paymentType,
+                                            String doctorId, boolean split) {
+        String source = MONTH.equals(granularity) ? DAY : granularity;
+        Map<String, Map<String, Object>> points = new TreeMap<>();
+        for (RevenueRollup rollup : find(source, from, to, paymentType, doctorId)) {
+            Instant bucket = MONTH.equals(granularity)
+                ? rollup.getBucketStart().atZone(zone).withDayOfMonth(1).toInstant()
+                : rollup.getBucketStart();
+            String key = bucket.toEpochMilli() + (split ? "|" + rollup.getPaymentType() + "|" + rollup.getDoctorId() : "");
+            Map<String, Object> point = points.computeIfAbsent(key, k -> {
+                Map<String, Object> p = new LinkedHashMap<>();
+                p.put("bucketStart", bucket);
+                if (split) {
+                    p.put("paymentType", rollup.getPaymentType());
+                    p.put("doctorId", NO_DOCTOR.equals(rollup.getDoctorId()) ? null : rollup.getDoctorId());
+                }
+                p.put("revenue", 0L);
+                p.put("payments", 0L);
+                return p;
+            });
+            point.merge("revenue", rollup.getRevenuePaise(), (a, b) -> (Long) a + (Long) b);
+            point.merge("payments", rollup.getPayments(), (a, b) -> (Long) a + (Long) b);
+        }
+        // Summed in paise, reported in rupees
+        points.values().forEach(point -> point.put("revenue", Money.toRupees((Long) point.get("revenue"))));
+        return new ArrayList<>(points.values());
+    }
+
+    /**
+     * Total for an arbitrary [from, to) at hour precision: whole days come from day
+     * buckets and the partial days at either end from hour buckets.
+     */
+    public Map<String, Object> total(Instant from, Instant to, String paymentType, String doctorId) {
+        Instant start = ceil(from, ChronoUnit.HOURS);
+        Instant end = floor(to, ChronoUnit.HOURS);
+        Instant firstDay = ceil(start, ChronoUnit.DAYS);
+        Instant lastDay = floor(end, ChronoUnit.DAYS);
+
+        List<RevenueRollup> buckets = new ArrayList<>();
+        if (firstDay.isBefore(lastDay)) {
+            buckets.addAll(find(DAY, firstDay, lastDay, paymentType, doctorId));
+            buckets.addAll(find(HOUR, start, firstDay, paymentType, doctorId));
+            buckets.addAll(find(HOUR, lastDay, end, paymentType, doctorId));
+        } else {
+            buckets.addAll(find(HOUR, start, end, paymentType, doctorId));
+        }
+
+        long revenuePaise = 0;
+        long payments = 0;
+        for (RevenueRollup bucket : buckets) {
+            revenuePaise += bucket.getRevenuePaise();
+            payments += bucket.getPayments();
+        }
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("from", start);
+        total.put("to", end);
+        total.put("revenue", Money.toRupees(revenuePaise));
+        total.put("payments", payments);
+        return total;
+    }
+
+    private List<RevenueRollup> find(String granularity, Instant from, Instant to, String paymentType, String doctorId) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        Criteria criteria = Criteria.where("granularity").is(granularity).and("bucketStart").gte(from).lt(to);
+        if (paymentType != null) {
+            criteria.and("paymentType").is(paymentType);
+        }
+        if (doctorId != null) {
+            criteria.and("doctorId").is(doctorId);
+        }
+        return mongoTemplate.find(new Query(criteria).with(Sort.by("bucketStart")), RevenueRollup.class);
+    }
+
+    private void backfill() {
+        Query pending = new Query(Criteria.where("paymentStatus").in("SUCCESS", "COMPLETED")
+            .and("rollupMarker").exists(false));
+        pending.fields().include("_id");
+        List<String> batch = new ArrayList<>(backfillBatchSize);
+        try {
+            resumeAbandoned();
+            try (Stream<Payment> payments = mongoTemplate.stream(pending, Payment.class)) {
+                for (Payment payment : (Iterable<Payment>) payments::iterator) {
+                    batch.add(payment.getId());
+                    if (batch.size() >= backfillBatchSize) {
+                        backfillBatch(batch);
+                    }
+                }
+            }
+            backfillBatch(batch);
+        } catch (Exception e) {
+            backfillError = e.getMessage();
+            System.err.println("Revenue rollup backfill failed: " + e.getMessage());
+        } finally {
+            backfillFinishedAt = Instant.now();
+            backfillRunning.set(false);
+        }
+    }
+
+    // Claim the batch with one updateMulti, then $inc only what this backfill claimed
+    private void backfillBatch(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String batchMarker = "backfill:" + new ObjectId().toHexString();
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(ids).and("rollupMarker").exists(false)),
+            claim(batchMarker),
+            Payment.class);
+        backfilled.addAndGet(finish(batchMarker));
+        ids.clear();
+    }
+
+    // Claims whose writer died between the claim and clearing rollupPending
+    private void resumeAbandoned() {
+        Query abandoned = new Query(Criteria.where("rollupPending").is(true)
+            .and("rollupClaimedAt").lt(Instant.now().minusMillis(pendingTimeoutMs)));
+        for (String marker : mongoTemplate.findDistinct(abandoned, "rollupMarker", Payment.class, String.class)) {
+            backfilled.addAndGet(finish(marker));
+        }
+    }
+
+    // Apply every payment still pending under this marker; returns how many there were
+    private int finish(String marker) {
+        Query claimed = new Query(Criteria.where("rollupMarker").is(marker).and("rollupPending").is(true));
+        claimed.fields().include("paymentType").include("doctorId").include("amountPaise").include("createdAt").include("paymentStatus");
+        List<Payment> payments = mongoTemplate.find(claimed, Payment.class);
+
+        // Pre-merge per bucket so the bulk has one $inc per bucket rather than per payment
+        Map<String, RevenueRollup> merged = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            ids.add(payment.getId());
+            if (payment.getAmountPaise() == null) {
+                continue;
+            }
+            for (RevenueRollup bucket : bucketsFor(payment)) {
+                merged.merge(bucket.getId(), bucket, (a, b) -> {
+                    a.setRevenuePaise(a.getRevenuePaise() + b.getRevenuePaise());
+                    a.setPayments(a.getPayments() + b.getPayments());
+                    return a;
+                });
+            }
+        }
+        apply(marker, merged.values(), ids);
+        return payments.size();
+    }
+
+    /**
+     * Second phase of a claim: $inc each bucket that does not already hold the marker,
+     * clear rollupPending on the payments, then drop the marker from the buckets.
+     * Safe to repeat after a crash at any point.
+     */
+    private void apply(String marker, Collection<RevenueRollup> buckets, List<String> paymentIds) {
+        if (!buckets.isEmpty()) {
+            // Create missing buckets first so the guarded $inc below never has to upsert
+            BulkOperations create = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevenueRollup.class);
+            BulkOperations increment = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevenueRollup.class);
+            for (RevenueRollup bucket : buckets) {
+                create.upsert(new Query(Criteria.where("_id").is(bucket.getId())), empty(bucket));
+                increment.updateOne(new Query(Criteria.where("_id").is(bucket.getId()).and("markers").ne(marker)),
+                    increment(bucket).addToSet("markers", marker));
+            }
+            create.execute();
+            increment.execute();
+        }
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(paymentIds).and("rollupMarker").is(marker)),
+            new Update().unset("rollupPending"),
+            Payment.class);
+        if (!buckets.isEmpty()) {
+            List<String> bucketIds = buckets.stream().map(RevenueRollup::getId).toList();
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(bucketIds)),
+                new Update().pull("markers", marker), RevenueRollup.class);
+        }
+    }
+
+    private Update claim(String marker) {
+        return new Update()
+            .set("rollupMarker", marker)
+            .set("rollupPending", true)
+            .set("rollupClaimedAt", Instant.now());
+    }
+
+    private List<RevenueRollup> bucketsFor(Payment payment) {
+        // createdAt is a zone-less LocalDateTime written in the server's default zone
+        LocalDateTime createdAt = payment.getCreatedAt() != null ? payment.getCreatedAt() : LocalDateTime.now();
+        ZonedDateTime at = createdAt.atZone(ZoneId.systemDefault()).withZoneSameInstant(zone);
+        String type = payment.getPaymentType() != null ? payment.getPaymentType() : "UNKNOWN";
+        String doctor = payment.getDoctorId() != null ? payment.getDoctorId() : NO_DOCTOR;
+        return List.of(
+            bucket(HOUR, at.truncatedTo(ChronoUnit.HOURS).toInstant(), type, doctor, payment.getAmountPaise()),
+            bucket(DAY, at.truncatedTo(ChronoUnit.DAYS).toInstant(), type, doctor, payment.getAmountPaise()));
+    }
+
+    private RevenueRollup bucket(String granularity, Instant start, String type, String doctor, long amountPaise) {
+        String id = granularity + "|" + start.toEpochMilli() + "|" + type + "|" + doctor;
+        return new RevenueRollup(id, granularity, start, type, doctor, amountPaise, 1L, null, null);
+    }
+
+    private Update empty(RevenueRollup bucket) {
+        return new Update()
+            .setOnInsert("granularity", bucket.getGranularity())
+            .setOnInsert("bucketStart", bucket.getBucketStart())
+            .setOnInsert("paymentType", bucket.getPaymentType())
+            .setOnInsert("doctorId", bucket.getDoctorId())
+            .setOnInsert("revenuePaise", 0L)
+            .setOnInsert("payments", 0L)
+            .setOnInsert("markers", List.of());
+    }
+
+    private Update increment(RevenueRollup bucket) {
+        return new Update()
+            .inc("revenuePaise", bucket.getRevenuePaise())
+            .inc("payments", bucket.getPayments())
+            .set("updatedAt", Instant.now());
+    }
+
+    private Instant floor(Instant instant, ChronoUnit unit) {
+        return instant.atZone(zone).truncatedTo(unit).toInstant();
+    }
+
+    private Instant ceil(Instant instant, ChronoUnit unit) {
+        Instant floor = floor(instant, unit);
+        return floor.equals(instant) ? floor : instant.atZone(zone).truncatedTo(unit).plus(1, unit).toInstant();
+    }
+}
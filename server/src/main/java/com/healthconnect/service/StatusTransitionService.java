@@ -0,0 +1,126 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.StatusChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import org.bson.Document;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies status changes as one conditional findAndModify:
+ * "$set status and $push a history entry where the current status allows it".
+ *
+ * Nothing is read first, so two concurrent updates cannot both win and no other
+ * field of the document is rewritten.
+ */
+@Service
+public class StatusTransitionService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    public <T> TransitionResult<T> transition(Class<T> type, String id, String target, List<String> allowedFrom) {
+        Query query = new Query(Criteria.where("_id").is(id).and("status").in(allowedFrom));
+        T updated = mongoTemplate.findAndModify(query, transitionUpdate(target), FindAndModifyOptions.options().returnNew(true), type);
+        if (updated != null) {
+            return new TransitionResult<>(Outcome.UPDATED, updated, target);
+        }
+
+        // Explain the miss: unknown document, or a status the transition is not allowed from
+        Query current = new Query(Criteria.where("_id").is(id));
+        current.fields().include("status");
+        Document existing = mongoTemplate.findOne(current, Document.class, mongoTemplate.getCollectionName(type));
+        if (existing == null) {
+            return new TransitionResult<>(Outcome.NOT_FOUND, null, null);
+        }
+        return new TransitionResult<>(Outcome.ILLEGAL_TRANSITION, null, existing.getString("status"));
+    }
+
+    /**
+     * Same conditional update for many documents as one unordered bulkWrite.
+     *
+     * Every history entry written by the batch carries the same transitionId, so a
+     * single follow-up query tells which ids changed and what the others are stuck at.
+     * Results are keyed by id in request order; document is always null.
+     */
+    public <T> Map<String, TransitionResult<T>> bulkTransition(Class<T> type, Collection<String> ids, String target,
+                                                               List<String> allowedFrom) {
+        Collection<String> distinct = new LinkedHashSet<>(ids);
+        Map<String, TransitionResult<T>> results = new LinkedHashMap<>();
+        if (distinct.isEmpty()) {
+            return results;
+        }
+
+        String transitionId = new ObjectId().toHexString();
+        Update update = new Update()
+            .set("status", target)
+            .push("statusHistory", new StatusChange(target, Instant.now(), transitionId));
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        for (String id : distinct) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(id).and("status").in(allowedFrom)), update);
+        }
+        int modified = bulk.execute().getModifiedCount();
+
+        if (modified == distinct.size()) {
+            distinct.forEach(id -> results.put(id, new TransitionResult<>(Outcome.UPDATED, null, target)));
+            return results;
+        }
+
+        Query current = new Query(Criteria.where("_id").in(distinct));
+        current.fields().include("status").elemMatch("statusHistory", Criteria.where("transitionId").is(transitionId));
+        Map<String, Document> found = new LinkedHashMap<>();
+        for (Document document : mongoTemplate.find(current, Document.class, mongoTemplate.getCollectionName(type))) {
+            Object id = document.get("_id");
+            found.put(id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id), document);
+        }
+        for (String id : distinct) {
+            Document document = found.get(id);
+            if (document == null) {
+                results.put(id, new TransitionResult<>(Outcome.NOT_FOUND, null, null));
+            } else if (document.containsKey("statusHistory")) {
+                results.put(id, new TransitionResult<>(Outcome.UPDATED, null, target));
+            } else {
+                results.put(id, new TransitionResult<>(Outcome.ILLEGAL_TRANSITION, null, document.getString("status")));
+            }
+        }
+        return results;
+    }
+
+    // Ids of documents matching the criteria, at most limit of them
+    public List<String> findIds(Class<?> type, Criteria criteria, int limit) {
+        Query query = new Query(criteria).limit(limit);
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(type)).stream()
+            .map(document -> document.get("_id"))
+            .map(id -> id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id))
+            .toList();
+    }
+
+    public static Update transitionUpdate(String target) {
+        return new Update()
+            .set("status", target)
+            .push("statusHistory", new StatusChange(target, Instant.now()));
+    }
+
+    public enum Outcome {
+        UPDATED, NOT_FOUND, ILLEGAL_TRANSITION
+    }
+
+    // status is the new status when UPDATED, the unchanged current one when ILLEGAL_TRANSITION
+    public record TransitionResult<T>(Outcome outcome, T document, String status) {
+    }
+}
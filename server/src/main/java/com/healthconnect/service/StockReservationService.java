@@ -0,0 +1,223 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Medicine;
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.OrderItem;
+import com.healthconnect.model.OrderStatus;
+import com.healthconnect.model.StockReservation;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reserves medicine stock for orders without read-modify-write.
+ *
+ * Every line is a conditional "$inc stock by -qty where stock >= qty" sent in one
+ * unordered bulk write, so concurrent checkouts on the same SKU serialize inside
+ * Mongo on a single document update instead of on application locks. Each
+ * successful decrement also adds the order ID to Medicine.holds, which makes
+ * compensation and release exact and idempotent: stock is only given back
+ * where the marker is still present.
+ */
+@Service
+public class StockReservationService {
+
+    // Order statuses an expired reservation may cancel (null = never set, treated as PLACED)
+    private static final List<String> UNPAID = Arrays.asList(OrderStatus.PLACED.name(), null);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StatusTransitionService statusTransitionService;
+
+    @Value("${stock.reservation.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${stock.reservation.sweep-batch:500}")
+    private int sweepBatch;
+
+    // Reserve every line of an order, or nothing
+    public void reserve(String orderId, List<OrderItem> items) {
+        Map<String, Integer> quantities = mergeQuantities(items);
+        Instant now = Instant.now();
+
+        // Written first so that a crash mid-reservation is cleaned up by the expiry sweep
+        List<StockReservation.ReservedItem> reserved = quantities.entrySet().stream()
+            .map(e -> new StockReservation.ReservedItem(e.getKey(), e.getValue()))
+            .toList();
+        mongoTemplate.insert(new StockReservation(orderId, reserved, "HELD", now,
+            now.plus(Duration.ofMinutes(timeoutMinutes)), null));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Medicine.class);
+        quantities.forEach((medicineId, quantity) -> bulk.updateOne(
+            new Query(Criteria.where("_id").is(medicineId).and("stock").gte(quantity)),
+            new Update().inc("stock", -quantity).addToSet("holds", orderId)));
+        int modified = bulk.execute().getModifiedCount();
+
+        if (modified < quantities.size()) {
+            Set<String> held = mongoTemplate.find(
+                    new Query(Criteria.where("_id").in(quantities.keySet()).and("holds").is(orderId)), Medicine.class)
+                .stream()
+                .map(Medicine::getId)
+                .collect(Collectors.toSet());
+            release(orderId);
+            List<String> unavailable = quantities.keySet().stream().filter(id -> !held.contains(id)).toList();
+            throw new InsufficientStockException(unavailable);
+        }
+    }
+
+    // Order was paid or moved past PLACED: keep the stock taken
+    public void commit(String orderId) {
+        StockReservation reservation = transition(orderId, "COMMITTED");
+        if (reservation != null) {
+            applyToHolders(reservation, false);
+        }
+    }
+
+    // Order was abandoned or cancelled: give the stock back
+    public void release(String orderId) {
+        StockReservation reservation = transition(orderId, "RELEASED");
+        if (reservation != null) {
+            applyToHolders(reservation, true);
+        }
+    }
+
+    public void commitAll(Collection<String> orderIds) {
+        applyToHolders(transitionAll(orderIds, "COMMITTED"), false);
+    }
+
+    public void releaseAll(Collection<String> orderIds) {
+        applyToHolders(transitionAll(orderIds, "RELEASED"), true);
+    }
+
+    /**
+     * Cancel orders that were never paid and give their stock back.
+     *
+     * The order is cancelled first with a conditional PLACED -> CANCELLED transition, so
+     * an expired order can no longer be shipped once its stock is back on sale. An order
+     * that already moved on keeps its stock instead.
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:60000}")
+    public void releaseExpired() {
+        Query query = new Query(Criteria.where("status").is("HELD").and("expiresAt").lt(Instant.now())).limit(sweepBatch);
+        query.fields().include("_id");
+        for (StockReservation expired : mongoTemplate.find(query, StockReservation.class)) {
+            String orderId = expired.getId();
+            StatusTransitionService.TransitionResult<MedicineOrder> cancelled = statusTransitionService.transition(
+                MedicineOrder.class, orderId, OrderStatus.CANCELLED.name(), UNPAID);
+            if (cancelled.outcome() == StatusTransitionService.Outcome.ILLEGAL_TRANSITION
+                    && !OrderStatus.CANCELLED.name().equals(cancelled.status())) {
+                // Moved past PLACED before its commit was recorded: the stock is sold
+                commit(orderId);
+                continue;
+            }
+            // Cancelled now, cancelled earlier, or never saved (placement failed midway)
+            release(orderId);
+            System.out.println("Cancelled unpaid order and released its stock: " + orderId);
+        }
+    }
+
+    // HELD -> target, returning the reservation only to the caller that made the change
+    private StockReservation transition(String orderId, String target) {
+        return mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(orderId).and("status").is("HELD")),
+            new Update().set("status", target),
+            FindAndModifyOptions.options().returnNew(true),
+            StockReservation.class);
+    }
+
+    /**
+     * HELD -> target for many orders with one updateMulti. The batch's transitionId is
+     * stamped on every reservation it changed, so one follow-up read returns exactly
+     * those, even when another caller moved some of the same orders concurrently.
+     */
+    private List<StockReservation> transitionAll(Collection<String> orderIds, String target) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        String transitionId = new ObjectId().toHexString();
+        long modified = mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(orderIds).and("status").is("HELD")),
+            new Update().set("status", target).set("transitionId", transitionId),
+            StockReservation.class).getModifiedCount();
+        if (modified == 0) {
+            return List.of();
+        }
+        return mongoTemplate.find(
+            new Query(Criteria.where("_id").in(orderIds).and("transitionId").is(transitionId)), StockReservation.class);
+    }
+
+    private void applyToHolders(StockReservation reservation, boolean restoreStock) {
+        applyToHolders(List.of(reservation), restoreStock);
+    }
+
+    // One unordered bulk on medicines for every line of the given reservations
+    private void applyToHolders(List<StockReservation> reservations, boolean restoreStock) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Medicine.class);
+        int operations = 0;
+        for (StockReservation reservation : reservations) {
+            if (reservation.getItems() == null) {
+                continue;
+            }
+            String orderId = reservation.getId();
+            for (StockReservation.ReservedItem item : reservation.getItems()) {
+                Update update = new Update().pull("holds", orderId);
+                if (restoreStock) {
+                    update.inc("stock", item.getQuantity());
+                }
+                bulk.updateOne(new Query(Criteria.where("_id").is(item.getMedicineId()).and("holds").is(orderId)), update);
+                operations++;
+            }
+        }
+        if (operations > 0) {
+            bulk.execute();
+        }
+    }
+
+    private Map<String, Integer> mergeQuantities(List<OrderItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            if (item.getMedicineId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Every item needs a medicineId and a positive quantity");
+            }
+            quantities.merge(item.getMedicineId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    public static class InsufficientStockException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> medicineIds;
+
+        public InsufficientStockException(List<String> medicineIds) {
+            super("Insufficient stock for medicines: " + medicineIds);
+            this.medicineIds = new ArrayList<>(medicineIds);
+        }
+
+        public List<String> getMedicineIds() { return medicineIds; }
+    }
+}
@@ -0,0 +1,141 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Payment;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the wallet distribution recorded in Payment.outbox.
+ *
+ * The outbox event is saved in the same document write as the payment status, so a
+ * successful payment can never exist without it. Batches are claimed with a token
+ * and a lease, which lets several nodes dispatch without picking the same payment;
+ * a claim whose node died is picked up again after the lease. Crediting itself is
+ * idempotent per payment, so an event retried after a partial failure credits once.
+ */
+@Service
+public class WalletDistributionDispatcher {
+
+    public static final String DISTRIBUTE_PAYMENT = "DISTRIBUTE_PAYMENT";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Value("${wallet.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${wallet.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${wallet.outbox.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    @Value("${wallet.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+
+    // Run a dispatch pass off the request thread, e.g. right after a payment succeeds
+    public void wake() {
+        Thread.ofVirtual().name("wallet-outbox").start(this::dispatch);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        // One pass at a time per node; other nodes are kept apart by the claim token
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Payment> batch;
+            do {
+                batch = claimBatch();
+                batch.forEach(this::deliver);
+            } while (batch.size() == batchSize);
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("pending", mongoTemplate.count(new Query(Criteria.where("outbox.status").is("PENDING")), Payment.class));
+        status.put("processing", mongoTemplate.count(new Query(Criteria.where("outbox.status").is("PROCESSING")), Payment.class));
+        status.put("failed", mongoTemplate.count(new Query(Criteria.where("outbox.status").is("FAILED")), Payment.class));
+        status.put("delivered", delivered.sum());
+        status.put("failedAttempts", failedAttempts.sum());
+        return status;
+    }
+
+    private List<Payment> claimBatch() {
+        Instant now = Instant.now();
+        Criteria due = new Criteria().orOperator(
+            Criteria.where("outbox.status").is("PENDING").and("outbox.nextAttemptAt").lte(now),
+            Criteria.where("outbox.status").is("PROCESSING").and("outbox.leaseUntil").lt(now));
+
+        Query candidates = new Query(due).with(Sort.by("outbox.nextAttemptAt")).limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, Payment.class).stream().map(Payment::getId).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Re-check "due" in the claim so payments taken by another node in between are skipped
+        String token = new ObjectId().toHexString();
+        mongoTemplate.updateMulti(
+            new Query(new Criteria().andOperator(Criteria.where("_id").in(ids), due)),
+            new Update()
+                .set("outbox.status", "PROCESSING")
+                .set("outbox.claimToken", token)
+                .set("outbox.leaseUntil", now.plus(Duration.ofSeconds(leaseSeconds)))
+                .inc("outbox.attempts", 1),
+            Payment.class);
+        return mongoTemplate.find(new Query(Criteria.where("outbox.claimToken").is(token)), Payment.class);
+    }
+
+    private void deliver(Payment payment) {
+        String token = payment.getOutbox().getClaimToken();
+        Query claimed = new Query(Criteria.where("_id").is(payment.getId()).and("outbox.claimToken").is(token));
+        try {
+            walletService.distributePayment(payment);
+            mongoTemplate.updateFirst(claimed, new Update()
+                .set("outbox.status", "DONE")
+                .set("outbox.processedAt", Instant.now())
+                .unset("outbox.claimToken")
+                .unset("outbox.leaseUntil")
+                .unset("outbox.lastError"), Payment.class);
+            delivered.increment();
+        } catch (RuntimeException e) {
+            failedAttempts.increment();
+            int attempts = payment.getOutbox().getAttempts() != null ? payment.getOutbox().getAttempts() : 1;
+            mongoTemplate.updateFirst(claimed, new Update()
+                .set("outbox.status", attempts >= maxAttempts ? "FAILED" : "PENDING")
+                .set("outbox.nextAttemptAt", Instant.now().plus(Duration.ofSeconds(retryBackoffSeconds * attempts)))
+                .set("outbox.lastError", e.getMessage())
+                .unset("outbox.claimToken")
+                .unset("outbox.leaseUntil"), Payment.class);
+            System.err.println("Wallet distribution failed for payment " + payment.getId() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Money;
+import com.healthconnect.model.Wallet;
+import com.healthconnect.model.WalletLedgerEntry;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Moves transactions embedded in wallet documents (before wallet_ledger existed)
+ * into the ledger collection and drops them from the wallet.
+ *
+ * Entries are upserted on (walletId, dedupKey), so a run interrupted halfway is
+ * simply repeated on the next startup; wallets without an embedded array are skipped.
+ */
+@Service
+public class WalletLedgerMigrationService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        Query legacy = new Query(Criteria.where("transactions").exists(true));
+        legacy.fields().include("ownerId").include("ownerType").include("transactions");
+
+        String walletCollection = mongoTemplate.getCollectionName(Wallet.class);
+        long migrated = 0;
+        try (Stream<Document> wallets = mongoTemplate.stream(legacy, Document.class, walletCollection)) {
+            for (Document wallet : (Iterable<Document>) wallets::iterator) {
+                migrated += migrateWallet(wallet, walletCollection);
+            }
+        }
+        if (migrated > 0) {
+            System.out.println("Moved " + migrated + " embedded wallet transactions to the ledger");
+        }
+    }
+
+    private int migrateWallet(Document wallet, String walletCollection) {
+        String walletId = wallet.get("_id").toString();
+        List<Document> transactions = wallet.getList("transactions", Document.class, List.of());
+
+        if (!transactions.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, WalletLedgerEntry.class);
+            for (int i = 0; i < transactions.size(); i++) {
+                Document transaction = transactions.get(i);
+                String dedupKey = transaction.getString("dedupKey");
+                if (dedupKey == null) {
+                    // Transaction ids of that era were not unique, the position is
+                    dedupKey = "legacy:" + i;
+                }
+                Date createdAt = transaction.getDate("createdAt");
+                Update insert = new Update()
+                    .setOnInsert("ownerId", wallet.getString("ownerId"))
+                    .setOnInsert("ownerType", wallet.getString("ownerType"))
+                    .setOnInsert("transactionId", transaction.getString("id"))
+                    .setOnInsert("paymentId", transaction.getString("paymentId"))
+                    .setOnInsert("type", transaction.getString("type"))
+                    .setOnInsert("amountPaise", transaction.get("amount") instanceof Number amount
+                        ? Money.ofRupees(amount.doubleValue()) : 0L)
+                    .setOnInsert("description", transaction.getString("description"))
+                    .setOnInsert("relatedEntityId", transaction.getString("relatedEntityId"))
+                    .setOnInsert("createdAt", createdAt != null ? createdAt : new Date(0));
+                bulk.upsert(new Query(Criteria.where("walletId").is(walletId).and("dedupKey").is(dedupKey)), insert);
+            }
+            bulk.execute();
+        }
+
+        Update update = new Update()
+            .inc("transactionCount", transactions.size())
+            .unset("transactions");
+        // Guarded on the array so a concurrent run cannot count the same transactions twice
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(wallet.get("_id")).and("transactions").exists(true)),
+            update, walletCollection);
+        return transactions.size();
+    }
+}
@@ -1,47 +1,135 @@
 package com.healthconnect.service;
 
+import com.healthconnect.model.LedgerAccount;
+import com.healthconnect.model.Money;
 import com.healthconnect.model.Wallet;
+import com.healthconnect.model.WalletLedgerEntry;
 import com.healthconnect.model.Payment;
 import com.healthconnect.repository.WalletRepository;
+import com.healthconnect.repository.WalletRepositoryCustom;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Service
 public class WalletService {
 
+    // The platform's own wallet, credited with the commission on every distributed payment
+    public static final String PLATFORM = "PLATFORM";
+    public static final String PLATFORM_OWNER_ID = "platform";
+
+    // Ledger account withdrawals are paid out to
+    public static final String PAYOUT = "PAYOUT";
+    public static final String PAYOUT_OWNER_ID = "bank";
+
+    private static final WalletRepositoryCustom.OwnerTypeTotals EMPTY_TOTALS = new WalletRepositoryCustom.OwnerTypeTotals(0, 0);
+
     @Autowired
     private WalletRepository walletRepository;
 
-    // Create or get wallet for doctor/pharmacy
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private LedgerPostingService ledgerPostingService;
+
+    // A claim on a ledger entry older than this is taken to be abandoned and may be taken over
+    @Value("${wallet.pending-timeout-ms:60000}")
+    private long pendingTimeoutMs;
+
+    @Value("${wallet.ledger.preview-size:20}")
+    private int previewSize;
+
+    // Platform commission in basis points (2000 = 20%)
+    @Value("${wallet.commission.consultation-bps:2000}")
+    private int consultationCommissionBps;
+
+    @Value("${wallet.commission.medicine-bps:1000}")
+    private int medicineCommissionBps;
+
+    // Serve /statistics from running totals adjusted on every wallet change instead of aggregating
+    @Value("${wallet.statistics.snapshot-enabled:false}")
+    private boolean statisticsSnapshotEnabled;
+
+    // ownerType -> running totals; null until the first resync
+    private volatile Map<String, RunningTotals> statisticsSnapshot;
+
+    // Adjustments made while a resync aggregates, replayed onto its result; null outside a resync
+    private Map<String, RunningTotals> resyncDeltas;
+
+    // Adjustments hold the read lock, so a resync can swap in its result without losing one in flight
+    private final ReadWriteLock statisticsLock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    void checkCommissions() {
+        Money.checkBasisPoints("wallet.commission.consultation-bps", consultationCommissionBps);
+        Money.checkBasisPoints("wallet.commission.medicine-bps", medicineCommissionBps);
+    }
+
+    // Create or get wallet for doctor/pharmacy, in one upsert so concurrent callers share one wallet
     public Wallet getOrCreateWallet(String ownerId, String ownerType) {
-        Optional<Wallet> existingWallet = walletRepository.findByOwnerIdAndOwnerType(ownerId, ownerType);
-        
-        if (existingWallet.isPresent()) {
-            return existingWallet.get();
-        } else {
-            Wallet newWallet = new Wallet(ownerId, ownerType);
-            return walletRepository.save(newWallet);
+        Query owner = new Query(Criteria.where("ownerId").is(ownerId).and("ownerType").is(ownerType));
+        Wallet template = new Wallet(ownerId, ownerType);
+        Update insert = new Update()
+            .setOnInsert("balancePaise", template.getBalancePaise())
+            .setOnInsert("currency", template.getCurrency())
+            .setOnInsert("transactionCount", template.getTransactionCount())
+            .setOnInsert("status", template.getStatus())
+            .setOnInsert("createdAt", template.getCreatedAt())
+            .setOnInsert("updatedAt", template.getUpdatedAt());
+        // returnNew(false): a null result means this call inserted the wallet
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(false);
+        try {
+            Wallet existing = mongoTemplate.findAndModify(owner, insert, options, Wallet.class);
+            if (existing != null) {
+                return existing;
+            }
+            adjustStatistics(ownerType, 1, 0);
+        } catch (DuplicateKeyException e) {
+            // Another caller inserted it between our match and insert; it exists now
         }
+        return mongoTemplate.findOne(owner, Wallet.class);
     }
 
-    // Process payment distribution after successful payment
+    /**
+     * Process payment distribution after successful payment.
+     * Safe to call again for the same payment (the outbox dispatcher retries): each wallet
+     * and ledger account applies a given payment at most once. Errors propagate so the caller can retry.
+     */
     public void distributePayment(Payment payment) {
-        try {
-            if ("SUCCESS".equals(payment.getPaymentStatus())) {
-                if ("CONSULTATION".equals(payment.getPaymentType())) {
-                    // Credit consultation fee to doctor's wallet
-                    creditDoctorWallet(payment);
-                } else if ("MEDICINE".equals(payment.getPaymentType())) {
-                    // Credit medicine payment to pharmacy wallet
-                    creditPharmacyWallet(payment);
-                }
+        if ("SUCCESS".equals(payment.getPaymentStatus())) {
+            if ("CONSULTATION".equals(payment.getPaymentType())) {
+                // Credit consultation fee to doctor's wallet
+                creditDoctorWallet(payment);
+            } else if ("MEDICINE".equals(payment.getPaymentType())) {
+                // Credit medicine payment to pharmacy wallet
+                creditPharmacyWallet(payment);
             }
-        } catch (Exception e) {
-            System.err.println("Error distributing payment: " + e.getMessage());
-            // In production, implement proper error handling and retry mechanism
         }
     }
 
@@ -50,24 +138,22 @@ public class WalletService {
         if (payment.getDoctorId() != null) {
             Wallet doctorWallet = getOrCreateWallet(payment.getDoctorId(), "DOCTOR");
             
-            // Calculate doctor's share (80% of consultation fee, 20% platform commission)
-            Double platformCommission = payment.getAmount() * 0.20; // 20% platform fee
-            Double doctorShare = payment.getAmount() - platformCommission;
+            // Doctor's share of the consultation fee after platform commission
+            Money.Split split = Money.split(payment.getAmountPaise(), consultationCommissionBps);
             
-            // Create transaction for doctor's credit
-            Wallet.Transaction doctorTransaction = new Wallet.Transaction(
+            // Create ledger entry for doctor's credit
+            WalletLedgerEntry doctorEntry = newEntry(
+                doctorWallet,
                 payment.getPaymentId(),
                 Wallet.TransactionType.CREDIT,
-                doctorShare,
+                split.payeePaise(),
                 "Consultation fee from patient - Payment ID: " + payment.getPaymentId()
             );
-            doctorTransaction.setRelatedEntityId(payment.getPatientId());
+            doctorEntry.setRelatedEntityId(payment.getPatientId());
+            doctorEntry.setDedupKey(paymentDedupKey(payment));
             
-            doctorWallet.addTransaction(doctorTransaction);
-            walletRepository.save(doctorWallet);
-            
-            // Log platform commission (in production, this would go to platform wallet)
-            System.out.println("Platform commission: ₹" + platformCommission + " for payment: " + payment.getPaymentId());
+            applyOnce(doctorEntry);
+            settleCommission(payment, "DOCTOR", payment.getDoctorId(), split);
         }
     }
 
@@ -79,24 +165,218 @@ public class WalletService {
         
         Wallet pharmacyWallet = getOrCreateWallet(pharmacyId, "PHARMACY");
         
-        // Calculate pharmacy's share (90% of medicine cost, 10% platform commission)
-        Double platformCommission = payment.getAmount() * 0.10; // 10% platform fee
-        Double pharmacyShare = payment.getAmount() - platformCommission;
+        // Pharmacy's share of the medicine cost after platform commission
+        Money.Split split = Money.split(payment.getAmountPaise(), medicineCommissionBps);
         
-        // Create transaction for pharmacy's credit
-        Wallet.Transaction pharmacyTransaction = new Wallet.Transaction(
+        // Create ledger entry for pharmacy's credit
+        WalletLedgerEntry pharmacyEntry = newEntry(
+            pharmacyWallet,
             payment.getPaymentId(),
             Wallet.TransactionType.CREDIT,
-            pharmacyShare,
+            split.payeePaise(),
             "Medicine order payment - Order ID: " + payment.getMedicineOrderId()
         );
-        pharmacyTransaction.setRelatedEntityId(payment.getPatientId());
-        
-        pharmacyWallet.addTransaction(pharmacyTransaction);
-        walletRepository.save(pharmacyWallet);
+        pharmacyEntry.setRelatedEntityId(payment.getPatientId());
+        pharmacyEntry.setDedupKey(paymentDedupKey(payment));
         
-        // Log platform commission
-        System.out.println("Platform commission: ₹" + platformCommission + " for medicine order: " + payment.getMedicineOrderId());
+        applyOnce(pharmacyEntry);
+        settleCommission(payment, "PHARMACY", pharmacyId, split);
+    }
+
+    // Commission to the platform wallet, then the balanced journal: patient pays, payee and platform receive
+    private void settleCommission(Payment payment, String payeeType, String payeeId, Money.Split split) {
+        if (split.commissionPaise() > 0) {
+            Wallet platformWallet = getOrCreateWallet(PLATFORM_OWNER_ID, PLATFORM);
+            WalletLedgerEntry commissionEntry = newEntry(
+                platformWallet,
+                payment.getPaymentId(),
+                Wallet.TransactionType.COMMISSION,
+                split.commissionPaise(),
+                "Platform commission on " + payment.getPaymentType() + " payment - Payment ID: " + payment.getPaymentId()
+            );
+            commissionEntry.setRelatedEntityId(payeeId);
+            commissionEntry.setDedupKey(paymentDedupKey(payment));
+            applyOnce(commissionEntry);
+        }
+
+        String patientId = payment.getPatientId() != null ? payment.getPatientId() : "unknown";
+        ledgerPostingService.post(ledgerPostingService
+            .journal(paymentDedupKey(payment), payment.getPaymentId(), payment.getPaymentType() + " payment")
+            .debit(LedgerAccount.accountId("PATIENT", patientId), payment.getAmountPaise())
+            .credit(LedgerAccount.accountId(payeeType, payeeId), split.payeePaise())
+            .credit(LedgerAccount.accountId(PLATFORM, PLATFORM_OWNER_ID), split.commissionPaise()));
+    }
+
+    /**
+     * Apply a ledger entry to its wallet's balance exactly once per dedup key: credits add,
+     * withdrawals subtract while the balance covers them.
+     * Each attempt first claims the key on the wallet under its own token (pendingEntries),
+     * then inserts the entry, unique on (walletId, dedupKey), with applied=false. The $inc
+     * only matches while the wallet holds that attempt's token, and in the same write marks
+     * the claim applied and drops the token, so an attempt that was taken over, or that
+     * resumes after another one finished, moves nothing. The entry is then marked applied and the claim
+     * dropped; finishAbandonedClaims cleans up after attempts that died in between.
+     * Returns whether the balance includes the entry, now or from an earlier attempt; false
+     * only for a withdrawal the balance did not cover.
+     */
+    private boolean applyOnce(WalletLedgerEntry entry) {
+        String walletId = entry.getWalletId();
+        String key = entry.getDedupKey();
+        String token = claim(walletId, key);
+        if (token == null) {
+            // The balance already includes it; only the entry and the claim are left to finish
+            finish(walletId, key, null);
+            return true;
+        }
+
+        entry.setApplied(false);
+        try {
+            mongoTemplate.insert(entry);
+        } catch (DuplicateKeyException e) {
+            WalletLedgerEntry existing = mongoTemplate.findOne(new Query(Criteria.where("walletId").is(walletId)
+                .and("dedupKey").is(key)), WalletLedgerEntry.class);
+            if (existing == null || !Boolean.FALSE.equals(existing.getApplied())) {
+                release(walletId, key, token);
+                return true;
+            }
+            entry = existing;
+        }
+
+        Wallet updated = increment(entry, token);
+        if (updated == null) {
+            // Still our claim, so the balance did not cover the withdrawal; the entry stays unapplied
+            if (release(walletId, key, token)) {
+                return false;
+            }
+            throw new IllegalStateException("Wallet entry " + key + " was taken over by another attempt");
+        }
+        adjustStatistics(updated.getOwnerType(), 0, signedAmount(entry));
+        finish(walletId, key, updated.getBalancePaise());
+        return true;
+    }
+
+    // Claim the key for this attempt; null if the balance change was already applied
+    private String claim(String walletId, String key) {
+        String token = new ObjectId().toHexString();
+        Instant now = Instant.now();
+        Query unclaimed = new Query(Criteria.where("_id").is(walletId).and("pendingEntries.key").ne(key));
+        if (mongoTemplate.updateFirst(unclaimed,
+                new Update().push("pendingEntries", new Wallet.PendingEntry(key, token, now, false)),
+                Wallet.class).getModifiedCount() == 1) {
+            return token;
+        }
+
+        Wallet.PendingEntry current = pendingEntry(walletId, key);
+        if (current == null) {
+            throw new IllegalStateException("Wallet entry " + key + " changed while claiming it");
+        }
+        if (current.isApplied()) {
+            return null;
+        }
+        if (current.getClaimedAt().isAfter(now.minusMillis(pendingTimeoutMs))) {
+            throw new IllegalStateException("Wallet entry " + key + " is still being applied");
+        }
+        // Abandoned: the new token fences the old attempt's $inc out
+        Query abandoned = new Query(Criteria.where("_id").is(walletId).and("pendingEntries.token").is(current.getToken()));
+        Update takeOver = new Update()
+            .set("pendingEntries.$.token", token)
+            .set("pendingEntries.$.claimedAt", now);
+        if (mongoTemplate.updateFirst(abandoned, takeOver, Wallet.class).getModifiedCount() != 1) {
+            throw new IllegalStateException("Wallet entry " + key + " changed while claiming it");
+        }
+        return token;
+    }
+
+    // The balance change, only while this attempt's claim is current and unapplied
+    private Wallet increment(WalletLedgerEntry entry, String token) {
+        long deltaPaise = signedAmount(entry);
+        Criteria claimed = Criteria.where("_id").is(entry.getWalletId()).and("pendingEntries.token").is(token);
+        if (deltaPaise < 0) {
+            claimed = claimed.and("balancePaise").gte(-deltaPaise);
+        }
+        Update update = new Update()
+            .inc("balancePaise", deltaPaise)
+            .inc("transactionCount", 1)
+            .set("updatedAt", LocalDateTime.now())
+            .set("pendingEntries.$.applied", true)
+            .unset("pendingEntries.$.token");
+        return mongoTemplate.findAndModify(new Query(claimed), update, FindAndModifyOptions.options().returnNew(true), Wallet.class);
+    }
+
+    private static long signedAmount(WalletLedgerEntry entry) {
+        return entry.getType() == Wallet.TransactionType.WITHDRAWAL ? -entry.getAmountPaise() : entry.getAmountPaise();
+    }
+
+    // Mark the entry applied, then drop the applied claim; balanceAfterPaise is null when not known
+    private void finish(String walletId, String key, Long balanceAfterPaise) {
+        Update applied = new Update().set("applied", true);
+        if (balanceAfterPaise != null) {
+            applied.set("balanceAfterPaise", balanceAfterPaise);
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("walletId").is(walletId).and("dedupKey").is(key)),
+            applied, WalletLedgerEntry.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(walletId)),
+            new Update().pull("pendingEntries", new Document("key", key).append("applied", true)), Wallet.class);
+    }
+
+    // Drop a claim that never moved the balance; false if it is no longer this token's
+    private boolean release(String walletId, String key, String token) {
+        return mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(walletId)),
+            new Update().pull("pendingEntries", new Document("key", key).append("token", token)),
+            Wallet.class).getModifiedCount() == 1;
+    }
+
+    private Wallet.PendingEntry pendingEntry(String walletId, String key) {
+        Query query = new Query(Criteria.where("_id").is(walletId));
+        query.fields().include("pendingEntries");
+        Wallet wallet = mongoTemplate.findOne(query, Wallet.class);
+        if (wallet == null || wallet.getPendingEntries() == null) {
+            return null;
+        }
+        return wallet.getPendingEntries().stream().filter(p -> key.equals(p.getKey())).findFirst().orElse(null);
+    }
+
+    /**
+     * Finish claims whose attempt died: an applied one has its entry marked applied before the
+     * claim is dropped (the balance already includes it), an unapplied one is simply dropped,
+     * which also fences its attempt out. Either way the wallet's claim list stays short.
+     */
+    @Scheduled(fixedDelayString = "${wallet.pending-sweep-ms:60000}")
+    public void finishAbandonedClaims() {
+        Instant cutoff = Instant.now().minusMillis(pendingTimeoutMs);
+        Query query = new Query(Criteria.where("pendingEntries").elemMatch(Criteria.where("claimedAt").lt(cutoff)));
+        query.fields().include("pendingEntries");
+        for (Wallet wallet : mongoTemplate.find(query, Wallet.class)) {
+            for (Wallet.PendingEntry pending : wallet.getPendingEntries()) {
+                if (!pending.getClaimedAt().isBefore(cutoff)) {
+                    continue;
+                }
+                if (pending.isApplied()) {
+                    finish(wallet.getId(), pending.getKey(), null);
+                } else {
+                    release(wallet.getId(), pending.getKey(), pending.getToken());
+                }
+            }
+        }
+    }
+
+    private WalletLedgerEntry newEntry(Wallet wallet, String paymentId, Wallet.TransactionType type,
+                                       long amountPaise, String description) {
+        WalletLedgerEntry entry = new WalletLedgerEntry();
+        entry.setWalletId(wallet.getId());
+        entry.setOwnerId(wallet.getOwnerId());
+        entry.setOwnerType(wallet.getOwnerType());
+        entry.setTransactionId(idGenerator.nextId("txn_"));
+        entry.setPaymentId(paymentId);
+        entry.setType(type);
+        entry.setAmountPaise(amountPaise);
+        entry.setDescription(description);
+        entry.setCreatedAt(Instant.now());
+        return entry;
+    }
+
+    private String paymentDedupKey(Payment payment) {
+        return "payment:" + payment.getId();
     }
 
     // Get wallet balance
@@ -120,55 +400,203 @@ public class WalletService {
         return walletRepository.findByOwnerType("PHARMACY");
     }
 
-    // Process withdrawal request
-    public boolean processWithdrawal(String ownerId, String ownerType, Double amount, String bankDetails) {
-        Optional<Wallet> walletOpt = walletRepository.findByOwnerIdAndOwnerType(ownerId, ownerType);
-        
-        if (walletOpt.isPresent()) {
-            Wallet wallet = walletOpt.get();
-            
-            if (wallet.hasSufficientBalance(amount) && amount > 0) {
-                // Create withdrawal transaction
-                Wallet.Transaction withdrawalTransaction = new Wallet.Transaction(
-                    "withdrawal_" + System.currentTimeMillis(),
-                    Wallet.TransactionType.WITHDRAWAL,
-                    amount,
-                    "Withdrawal to bank account: " + bankDetails
-                );
-                
-                wallet.addTransaction(withdrawalTransaction);
-                walletRepository.save(wallet);
-                
-                // In production, integrate with banking API for actual transfer
-                System.out.println("Withdrawal processed: ₹" + amount + " for " + ownerType + ": " + ownerId);
-                return true;
+    /**
+     * Process withdrawal request.
+     * Goes through applyOnce like a credit, keyed by requestId (the client's Idempotency-Key),
+     * so a retry after a crash at any step finishes the same withdrawal instead of debiting
+     * again. Without a requestId each call is a new withdrawal.
+     */
+    public boolean processWithdrawal(String ownerId, String ownerType, Double amount, String bankDetails, String requestId) {
+        if (amount == null || amount <= 0) {
+            return false;
+        }
+        long amountPaise = Money.ofRupees(amount);
+        Wallet wallet = mongoTemplate.findOne(
+            new Query(Criteria.where("ownerId").is(ownerId).and("ownerType").is(ownerType)), Wallet.class);
+        if (wallet == null) {
+            return false;
+        }
+
+        WalletLedgerEntry withdrawalEntry = newEntry(
+            wallet,
+            idGenerator.nextId("withdrawal_"),
+            Wallet.TransactionType.WITHDRAWAL,
+            amountPaise,
+            "Withdrawal to bank account: " + bankDetails
+        );
+        withdrawalEntry.setDedupKey("withdrawal:" + (requestId != null ? requestId : withdrawalEntry.getPaymentId()));
+        // Refused while the balance does not cover it
+        if (!applyOnce(withdrawalEntry)) {
+            return false;
+        }
+
+        // Keeps the payee's ledger account in step with the wallet balance
+        ledgerPostingService.post(ledgerPostingService
+            .journal(withdrawalEntry.getDedupKey(), withdrawalEntry.getPaymentId(), "Withdrawal")
+            .debit(LedgerAccount.accountId(ownerType, ownerId), amountPaise)
+            .credit(LedgerAccount.accountId(PAYOUT, PAYOUT_OWNER_ID), amountPaise));
+
+        // In production, integrate with banking API for actual transfer
+        System.out.println("Withdrawal processed: ₹" + amount + " for " + ownerType + ": " + ownerId);
+        return true;
+    }
+
+    // Wallet with its latest ledger entries, as returned to the dashboards
+    public Wallet withRecentTransactions(Wallet wallet) {
+        List<Wallet.Transaction> recent = getLedgerPage(wallet.getId(), null, previewSize).entries().stream()
+            .map(WalletService::toTransaction)
+            .toList();
+        wallet.setTransactions(recent);
+        return wallet;
+    }
+
+    // One page of a wallet's ledger, newest first; cursor is the nextCursor of the previous page
+    public LedgerPage getLedgerPage(String walletId, String cursor, int limit) {
+        // Credits still being applied are not shown until the balance includes them
+        Criteria criteria = Criteria.where("walletId").is(walletId).and("applied").ne(false);
+        if (cursor != null && !cursor.isBlank()) {
+            int separator = cursor.indexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant createdAt;
+            ObjectId id;
+            try {
+                createdAt = Instant.ofEpochMilli(Long.parseLong(cursor.substring(0, separator)));
+                id = new ObjectId(cursor.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor");
             }
+            criteria = criteria.orOperator(
+                Criteria.where("createdAt").lt(createdAt),
+                Criteria.where("createdAt").is(createdAt).and("_id").lt(id));
         }
-        return false;
+        Query query = new Query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "_id")))
+            .limit(limit + 1);
+        List<WalletLedgerEntry> entries = mongoTemplate.find(query, WalletLedgerEntry.class);
+
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = entries.subList(0, limit);
+            WalletLedgerEntry last = entries.get(limit - 1);
+            nextCursor = last.getCreatedAt().toEpochMilli() + "_" + last.getId();
+        }
+        return new LedgerPage(entries, nextCursor);
     }
 
-    // Get wallet statistics
+    private static Wallet.Transaction toTransaction(WalletLedgerEntry entry) {
+        Wallet.Transaction transaction = new Wallet.Transaction(
+            entry.getPaymentId(), entry.getType(), entry.getAmount(), entry.getDescription());
+        transaction.setId(entry.getTransactionId());
+        transaction.setRelatedEntityId(entry.getRelatedEntityId());
+        transaction.setDedupKey(entry.getDedupKey());
+        transaction.setCreatedAt(LocalDateTime.ofInstant(entry.getCreatedAt(), ZoneId.systemDefault()));
+        return transaction;
+    }
+
+    public record LedgerPage(List<WalletLedgerEntry> entries, String nextCursor) {}
+
+    // Get wallet statistics (running totals when the snapshot is enabled, otherwise one $group aggregation)
     public WalletStatistics getWalletStatistics() {
-        List<Wallet> doctorWallets = getAllDoctorWallets();
-        List<Wallet> pharmacyWallets = getAllPharmacyWallets();
-        
-        Double totalDoctorBalance = doctorWallets.stream()
-            .mapToDouble(Wallet::getBalance)
-            .sum();
-            
-        Double totalPharmacyBalance = pharmacyWallets.stream()
-            .mapToDouble(Wallet::getBalance)
-            .sum();
-        
+        Map<String, RunningTotals> snapshot = statisticsSnapshot;
+        if (statisticsSnapshotEnabled && snapshot != null) {
+            return toStatistics(snapshot.getOrDefault("DOCTOR", new RunningTotals(0, 0)).current(),
+                snapshot.getOrDefault("PHARMACY", new RunningTotals(0, 0)).current());
+        }
+        Map<String, WalletRepositoryCustom.OwnerTypeTotals> totals = walletRepository.totalsByOwnerType(null);
+        return toStatistics(totals.getOrDefault("DOCTOR", EMPTY_TOTALS), totals.getOrDefault("PHARMACY", EMPTY_TOTALS));
+    }
+
+    /**
+     * Reseed the running totals from the database.
+     * Increments only see this node's writes, so the periodic resync also folds in
+     * changes made by other nodes.
+     *
+     * This node's adjustments made while the aggregate runs are replayed onto its result
+     * rather than dropped with the old totals. The aggregate reads wallets one by one, so
+     * a change that lands on a wallet before the aggregate reaches it is counted by both;
+     * the snapshot is approximate by those changes, and by other nodes' changes since the
+     * last resync, until the next resync.
+     */
+    @Scheduled(fixedDelayString = "${wallet.statistics.snapshot-resync-ms:300000}")
+    public synchronized void resyncStatisticsSnapshot() {
+        if (!statisticsSnapshotEnabled) {
+            return;
+        }
+        Map<String, RunningTotals> deltas = new ConcurrentHashMap<>();
+        withStatisticsLock(statisticsLock.writeLock(), () -> resyncDeltas = deltas);
+        Map<String, RunningTotals> snapshot = new ConcurrentHashMap<>();
+        try {
+            walletRepository.totalsByOwnerType(null).forEach((ownerType, totals) ->
+                snapshot.put(ownerType, new RunningTotals(totals.wallets(), totals.balancePaise())));
+        } catch (RuntimeException e) {
+            withStatisticsLock(statisticsLock.writeLock(), () -> resyncDeltas = null);
+            throw e;
+        }
+        withStatisticsLock(statisticsLock.writeLock(), () -> {
+            deltas.forEach((ownerType, delta) -> add(snapshot, ownerType, delta.wallets.get(), delta.balancePaise.get()));
+            statisticsSnapshot = snapshot;
+            resyncDeltas = null;
+        });
+    }
+
+    private void adjustStatistics(String ownerType, long wallets, long balancePaise) {
+        if (ownerType == null) {
+            return;
+        }
+        withStatisticsLock(statisticsLock.readLock(), () -> {
+            Map<String, RunningTotals> snapshot = statisticsSnapshot;
+            if (snapshot != null) {
+                add(snapshot, ownerType, wallets, balancePaise);
+            }
+            Map<String, RunningTotals> deltas = resyncDeltas;
+            if (deltas != null) {
+                add(deltas, ownerType, wallets, balancePaise);
+            }
+        });
+    }
+
+    private static void add(Map<String, RunningTotals> totalsByType, String ownerType, long wallets, long balancePaise) {
+        RunningTotals totals = totalsByType.computeIfAbsent(ownerType, t -> new RunningTotals(0, 0));
+        totals.wallets.addAndGet(wallets);
+        totals.balancePaise.addAndGet(balancePaise);
+    }
+
+    private static void withStatisticsLock(Lock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private WalletStatistics toStatistics(WalletRepositoryCustom.OwnerTypeTotals doctors,
+                                          WalletRepositoryCustom.OwnerTypeTotals pharmacies) {
         return new WalletStatistics(
-            doctorWallets.size(),
-            pharmacyWallets.size(),
-            totalDoctorBalance,
-            totalPharmacyBalance,
-            totalDoctorBalance + totalPharmacyBalance
+            Math.toIntExact(doctors.wallets()),
+            Math.toIntExact(pharmacies.wallets()),
+            doctors.balance(),
+            pharmacies.balance(),
+            Money.toRupees(doctors.balancePaise() + pharmacies.balancePaise())
         );
     }
 
+    private static final class RunningTotals {
+        private final AtomicLong wallets;
+        private final AtomicLong balancePaise;
+
+        RunningTotals(long wallets, long balancePaise) {
+            this.wallets = new AtomicLong(wallets);
+            this.balancePaise = new AtomicLong(balancePaise);
+        }
+
+        WalletRepositoryCustom.OwnerTypeTotals current() {
+            return new WalletRepositoryCustom.OwnerTypeTotals(wallets.get(), balancePaise.get());
+        }
+    }
+
     // Statistics class
     public static class WalletStatistics {
         private final int totalDoctorWallets;
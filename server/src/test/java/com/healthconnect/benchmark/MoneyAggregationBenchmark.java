@@ -0,0 +1,88 @@
+package com.healthconnect.benchmark;
+
+import com.healthconnect.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totals and 20% commission over 100k wallet credits: boxed Double amounts summed the
+ * way the old getWalletStatistics and creditDoctorWallet did, versus long paise in a
+ * primitive array with Money.sum and Money.split.
+ *
+ * Not part of the test run. After mvn test-compile:
+ * mvn org.codehaus.mojo:exec-maven-plugin:3.1.0:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.healthconnect.benchmark.MoneyAggregationBenchmark
+ * The gc profiler reports gc.alloc.rate.norm, the bytes allocated per aggregation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAggregationBenchmark {
+
+    private static final int CREDITS = 100_000;
+
+    private List<Double> rupees;
+    private long[] paise;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rupees = new ArrayList<>(CREDITS);
+        paise = new long[CREDITS];
+        for (int i = 0; i < CREDITS; i++) {
+            double amount = (50_00 + random.nextInt(5_000_00)) / 100.0;
+            rupees.add(amount);
+            paise[i] = Money.ofRupees(amount);
+        }
+    }
+
+    @Benchmark
+    public void boxedDoubles(Blackhole blackhole) {
+        Double total = 0.0;
+        Double commission = 0.0;
+        for (Double amount : rupees) {
+            total += amount;
+            commission += amount * 0.20;
+        }
+        blackhole.consume(total);
+        blackhole.consume(commission);
+    }
+
+    @Benchmark
+    public void primitivePaise(Blackhole blackhole) {
+        long commission = 0;
+        for (long amount : paise) {
+            commission += Money.split(amount, 2000).commissionPaise();
+        }
+        blackhole.consume(Money.sum(paise));
+        blackhole.consume(commission);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MoneyAggregationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
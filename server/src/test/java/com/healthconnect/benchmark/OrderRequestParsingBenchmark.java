@@ -0,0 +1,136 @@
+package com.healthconnect.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.PlaceOrderRequest;
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.OrderItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /api/orders/place body with a 50-item cart: Map<String, Object> with the old
+ * containsKey/cast extraction versus binding straight to PlaceOrderRequest.
+ *
+ * Not part of the test run. After mvn test-compile:
+ * mvn org.codehaus.mojo:exec-maven-plugin:3.1.0:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.healthconnect.benchmark.OrderRequestParsingBenchmark
+ * The gc profiler reports gc.alloc.rate.norm, the bytes allocated per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderRequestParsingBenchmark {
+
+    private static final int CART_SIZE = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"patientId\":\"patient_001\",\"patientName\":\"Asha Rao\",")
+            .append("\"patientAddress\":\"12 MG Road, Bengaluru\",\"patientPhone\":\"9999999999\",\"medicines\":[");
+        for (int i = 0; i < CART_SIZE; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"medicineId\":\"med_").append(i)
+                .append("\",\"medicineName\":\"Medicine ").append(i)
+                .append("\",\"quantity\":").append(1 + i % 3)
+                .append(",\"price\":").append(10 + i).append(".5}");
+        }
+        json.append("],\"totalPrice\":1850.0}");
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MedicineOrder mapBody() throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> orderData = objectMapper.readValue(body, Map.class);
+        MedicineOrder order = new MedicineOrder();
+        if (orderData.containsKey("patientId")) {
+            order.setPatientId((String) orderData.get("patientId"));
+        }
+        if (orderData.containsKey("patientName")) {
+            order.setPatientName((String) orderData.get("patientName"));
+        }
+        if (orderData.containsKey("patientAddress")) {
+            order.setPatientAddress((String) orderData.get("patientAddress"));
+        }
+        if (orderData.containsKey("patientPhone")) {
+            order.setPatientPhone((String) orderData.get("patientPhone"));
+        }
+        if (orderData.containsKey("medicines")) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> medicinesData = (List<Map<String, Object>>) orderData.get("medicines");
+            order.setItems(medicinesData.stream().map(med -> {
+                OrderItem item = new OrderItem();
+                if (med.containsKey("medicineId")) {
+                    item.setMedicineId(String.valueOf(med.get("medicineId")));
+                }
+                if (med.containsKey("medicineName")) {
+                    item.setMedicineName((String) med.get("medicineName"));
+                }
+                if (med.containsKey("name")) {
+                    item.setName((String) med.get("name"));
+                }
+                if (med.containsKey("quantity")) {
+                    item.setQuantity(Integer.valueOf(med.get("quantity").toString()));
+                }
+                if (med.containsKey("price")) {
+                    item.setPrice(Double.valueOf(med.get("price").toString()));
+                }
+                return item;
+            }).toList());
+        }
+        if (orderData.containsKey("totalPrice")) {
+            order.setTotalAmount(Double.valueOf(orderData.get("totalPrice").toString()));
+        } else if (orderData.containsKey("totalAmount")) {
+            order.setTotalAmount(Double.valueOf(orderData.get("totalAmount").toString()));
+        }
+        return order;
+    }
+
+    @Benchmark
+    public MedicineOrder recordBody() throws IOException {
+        PlaceOrderRequest request = objectMapper.readValue(body, PlaceOrderRequest.class);
+        MedicineOrder order = new MedicineOrder();
+        order.setPatientId(request.patientId());
+        order.setPatientName(request.patientName());
+        order.setPatientAddress(request.patientAddress());
+        order.setPatientPhone(request.patientPhone());
+        order.setItems(request.medicines().stream()
+            .map(med -> new OrderItem(med.medicineId(), med.medicineName(), med.name(), med.quantity(), med.price()))
+            .toList());
+        order.setTotalAmount(request.clientTotal());
+        return order;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(OrderRequestParsingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.healthconnect.benchmark;
+
+import com.healthconnect.service.PaymentSignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout signature check: the old PaymentService.hmacSha256 path (new Mac per call,
+ * String.format per byte, String.equals) versus PaymentSignatureVerifier, plus a
+ * batch of 100 webhook bodies through verifyWebhooks.
+ *
+ * Not part of the test run. After mvn test-compile:
+ * mvn org.codehaus.mojo:exec-maven-plugin:3.1.0:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.healthconnect.benchmark.PaymentSignatureBenchmark
+ * The gc profiler reports gc.alloc.rate.norm, the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentSignatureBenchmark {
+
+    private static final String SECRET = "razorpay_secret_key";
+    private static final int WEBHOOK_BATCH = 100;
+
+    private final String orderId = "order_2xk9c4p1m0qa";
+    private final String paymentId = "pay_29QQoUBi66xm2f";
+    private String signature;
+    private PaymentSignatureVerifier verifier;
+    private List<PaymentSignatureVerifier.WebhookSignature> webhooks;
+
+    @Setup
+    public void setUp() throws Exception {
+        signature = legacyHmacSha256(orderId + "|" + paymentId, SECRET);
+
+        verifier = new PaymentSignatureVerifier();
+        ReflectionTestUtils.setField(verifier, "keySecret", SECRET);
+        ReflectionTestUtils.setField(verifier, "webhookSecret", "");
+        ReflectionTestUtils.invokeMethod(verifier, "init");
+
+        webhooks = new ArrayList<>(WEBHOOK_BATCH);
+        for (int i = 0; i < WEBHOOK_BATCH; i++) {
+            String body = "{\"event\":\"payment.captured\",\"payload\":{\"payment\":{\"entity\":{\"id\":\"pay_" + i
+                + "\",\"amount\":" + (1000 + i) + ",\"currency\":\"INR\"}}}}";
+            webhooks.add(new PaymentSignatureVerifier.WebhookSignature(body.getBytes(StandardCharsets.UTF_8),
+                legacyHmacSha256(body, SECRET)));
+        }
+    }
+
+    @Benchmark
+    public boolean legacyVerify() throws Exception {
+        return legacyHmacSha256(orderId + "|" + paymentId, SECRET).equals(signature);
+    }
+
+    @Benchmark
+    public boolean verifierVerify() {
+        return verifier.verifyPayment(orderId, paymentId, signature);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean[] verifierWebhookBatch() {
+        return verifier.verifyWebhooks(webhooks);
+    }
+
+    // PaymentService.hmacSha256 as it was before PaymentSignatureVerifier
+    private static String legacyHmacSha256(String data, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        mac.init(secretKeySpec);
+        byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hash) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(PaymentSignatureBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.healthconnect.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Properties over many random amounts, checked against BigDecimal as the reference:
+ * paise arithmetic never drifts, and shares round the way the commission rules say.
+ */
+class MoneyTest {
+
+    private static final int SAMPLES = 200_000;
+
+    private final Random random = new Random(2023);
+
+    @Test
+    void splitPartsAlwaysAddBackToTheAmount() {
+        for (int i = 0; i < SAMPLES; i++) {
+            long paise = random.nextLong(0, 100_000_000_00L);
+            int bps = random.nextInt(Money.BASIS_POINTS + 1);
+
+            Money.Split split = Money.split(paise, bps);
+
+            assertThat(split.payeePaise() + split.commissionPaise()).isEqualTo(paise);
+            assertThat(split.commissionPaise()).isBetween(0L, paise);
+        }
+    }
+
+    @Test
+    void basisPointsRoundHalfAwayFromZero() {
+        for (int i = 0; i < SAMPLES; i++) {
+            long paise = random.nextLong(-10_000_000_00L, 10_000_000_00L);
+            int bps = random.nextInt(Money.BASIS_POINTS + 1);
+
+            BigDecimal exact = BigDecimal.valueOf(paise).multiply(BigDecimal.valueOf(bps))
+                .divide(BigDecimal.valueOf(Money.BASIS_POINTS));
+            long expected = exact.setScale(0, RoundingMode.HALF_UP).longValueExact();
+
+            assertThat(Money.basisPoints(paise, bps)).as("%d paise at %d bps", paise, bps).isEqualTo(expected);
+        }
+        // Ties
+        assertThat(Money.basisPoints(5, 1000)).isEqualTo(1);
+        assertThat(Money.basisPoints(-5, 1000)).isEqualTo(-1);
+        assertThat(Money.basisPoints(25, 2000)).isEqualTo(5);
+    }
+
+    @Test
+    void runningTotalsInPaiseHaveNoDrift() {
+        long[] paise = new long[SAMPLES];
+        BigDecimal exact = BigDecimal.ZERO;
+        double doubles = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            // Rupee amounts with two decimals, as entered at checkout
+            double rupees = random.nextInt(1_000_000) / 100.0;
+            paise[i] = Money.ofRupees(rupees);
+            exact = exact.add(BigDecimal.valueOf(rupees));
+            doubles += rupees;
+        }
+
+        assertThat(Money.sum(paise)).isEqualTo(exact.movePointRight(2).longValueExact());
+        // The old Double totals were off by now, which is what paise fixes
+        assertThat(BigDecimal.valueOf(doubles)).isNotEqualByComparingTo(exact);
+    }
+
+    @Test
+    void commissionTotalsMatchThePerPaymentShares() {
+        long payee = 0;
+        long commission = 0;
+        long total = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            long paise = random.nextLong(1, 5_000_00L);
+            Money.Split split = Money.split(paise, 2000);
+            payee += split.payeePaise();
+            commission += split.commissionPaise();
+            total += paise;
+        }
+        assertThat(payee + commission).isEqualTo(total);
+    }
+
+    @Test
+    void rupeesRoundTripAndRoundHalfUp() {
+        for (int i = 0; i < SAMPLES; i++) {
+            long paise = random.nextLong(-1_000_000_00L, 1_000_000_00L);
+            assertThat(Money.ofRupees(Money.toRupees(paise))).isEqualTo(paise);
+        }
+        assertThat(Money.ofRupees(1.005)).isEqualTo(101);
+        assertThat(Money.ofRupees(2.675)).isEqualTo(268);
+        assertThat(Money.ofRupees(-0.005)).isEqualTo(-1);
+    }
+
+    @Test
+    void sumRejectsOverflowInsteadOfWrapping() {
+        assertThatThrownBy(() -> Money.sum(new long[] {Long.MAX_VALUE, 1}))
+            .isInstanceOf(ArithmeticException.class);
+    }
+}
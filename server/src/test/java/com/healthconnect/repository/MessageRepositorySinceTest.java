@@ -0,0 +1,95 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.Message;
+import com.healthconnect.support.InMemoryMongo;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Catching up through the (timestamp, id) cursor page by page returns every message once,
+ * including several that share a millisecond, in both storage modes.
+ */
+class MessageRepositorySinceTest {
+
+    private static final Instant SAME_MILLI = Instant.parse("2024-05-01T10:00:00.123Z");
+
+    private InMemoryMongo mongo;
+    private MongoTemplate mongoTemplate;
+    private MessageRepositoryImpl repository;
+    private final List<String> sent = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        mongoTemplate = mongo.template();
+        repository = new MessageRepositoryImpl();
+        ReflectionTestUtils.setField(repository, "mongoTemplate", mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void documentCursorDoesNotSkipMessagesSharingAMillisecond() {
+        for (Message message : messages()) {
+            mongoTemplate.insert(message);
+        }
+
+        assertThat(catchUp(false)).containsExactlyElementsOf(sent);
+    }
+
+    @Test
+    void bucketedCursorDoesNotSkipMessagesSharingAMillisecond() {
+        for (Message message : messages()) {
+            repository.appendToBucket(message, 3);
+        }
+
+        assertThat(catchUp(true)).containsExactlyElementsOf(sent);
+    }
+
+    // Pages of two, each continuing from the last message of the previous page
+    private List<String> catchUp(boolean bucketed) {
+        List<String> seen = new ArrayList<>();
+        Instant since = SAME_MILLI.minusSeconds(60);
+        String sinceId = null;
+        while (true) {
+            List<Message> page = bucketed
+                ? repository.findBucketedSince("patient-1", since, sinceId, 2)
+                : repository.findParticipantSince("patient-1", since, sinceId, 2);
+            if (page.isEmpty()) {
+                return seen;
+            }
+            page.forEach(message -> seen.add(message.getId()));
+            Message last = page.get(page.size() - 1);
+            since = last.getTimestamp();
+            sinceId = last.getId();
+        }
+    }
+
+    private List<Message> messages() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Instant timestamp = i == 0 ? SAME_MILLI.minusMillis(5) : i == 6 ? SAME_MILLI.plusMillis(5) : SAME_MILLI;
+            boolean fromPatient = i % 2 == 0;
+            Message message = new Message(new ObjectId().toHexString(),
+                fromPatient ? "patient-1" : "doctor-1", fromPatient ? "doctor-1" : "patient-1",
+                "name", fromPatient ? "PATIENT" : "DOCTOR", "message " + i, timestamp,
+                Message.conversationKey("patient-1", "doctor-1"));
+            messages.add(message);
+            sent.add(message.getId());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,128 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.support.TestMongoTemplates;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The order listing queries must be answered by the declared compound indexes,
+ * filter and sort alike: explain() shows an IXSCAN on the expected index, and
+ * neither a COLLSCAN nor an in-memory SORT stage.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OrderRepositoryIndexTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getReplicaSetUrl());
+        mongoTemplate = TestMongoTemplates.create(client);
+
+        // Enough spread that the planner has a real choice to make
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        List<MedicineOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            MedicineOrder order = new MedicineOrder();
+            order.setId(new ObjectId().toHexString());
+            order.setPatientId("patient_" + (i % 50));
+            order.setStatus(List.of("PLACED", "PROCESSING", "SHIPPED", "DELIVERED").get(i % 4));
+            order.setTotalAmount(100.0 + i % 500);
+            order.setOrderDate(start.plus(Duration.ofMinutes(i)));
+            orders.add(order);
+        }
+        mongoTemplate.insertAll(orders);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void statusFilterUsesStatusOrderDateIndex() {
+        assertServedByIndex(filter("SHIPPED", null, null, null, null), null, "status_orderDate");
+    }
+
+    @Test
+    void patientAndDateRangeUsePatientOrderDateIndex() {
+        Instant from = Instant.parse("2024-01-01T05:00:00Z");
+        assertServedByIndex(filter(null, "patient_7", from, from.plus(Duration.ofHours(10)), null),
+            null, "patient_orderDate");
+    }
+
+    @Test
+    void amountFilterStillWalksAnOrderDateIndex() {
+        assertServedByIndex(filter("PLACED", null, null, null, 300.0), null, "status_orderDate");
+    }
+
+    @Test
+    void nextPageCursorUsesTheSameIndex() {
+        String cursor = new OrderRepositoryImpl.Cursor(Instant.parse("2024-01-01T20:00:00Z"),
+            new ObjectId().toHexString()).encode();
+        assertServedByIndex(filter("DELIVERED", null, null, null, null), cursor, "status_orderDate");
+        assertServedByIndex(filter(null, null, null, null, null), cursor, "orderDate");
+    }
+
+    private void assertServedByIndex(OrderRepositoryCustom.OrderFilter filter, String cursor, String indexName) {
+        Query query = OrderRepositoryImpl.pageQuery(filter, cursor, 50);
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+            .getRequiredPersistentEntity(MedicineOrder.class);
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        Document explain = mongoTemplate.getCollection("orders")
+            .find(mapper.getMappedObject(query.getQueryObject(), entity))
+            .sort(mapper.getMappedSort(query.getSortObject(), entity))
+            .limit(query.getLimit())
+            .explain();
+
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        List<String> stages = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        collectStages(winningPlan, stages, indexes);
+        assertThat(stages).as("stages of %s", winningPlan.toJson()).contains("IXSCAN").doesNotContain("COLLSCAN", "SORT");
+        assertThat(indexes).as("indexes of %s", winningPlan.toJson()).containsOnly(indexName);
+    }
+
+    private static void collectStages(Object node, List<String> stages, List<String> indexes) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+                if ("IXSCAN".equals(stage)) {
+                    indexes.add(document.getString("indexName"));
+                }
+            }
+            document.values().forEach(value -> collectStages(value, stages, indexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages, indexes));
+        }
+    }
+
+    private static OrderRepositoryCustom.OrderFilter filter(String status, String patientId, Instant from, Instant to,
+                                                            Double minAmount) {
+        return new OrderRepositoryCustom.OrderFilter(status, patientId, from, to, minAmount, null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.model.OutboxEvent;
+import com.healthconnect.model.Payment;
+import com.healthconnect.support.TestMongoTemplates;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The SUCCESS status and its outbox event land in one write, and a second SUCCESS
+ * leaves an event the dispatcher already holds alone. Needs a real server for
+ * pipeline updates.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PaymentRepositoryStatusTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private PaymentRepositoryImpl repository;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(MONGO.getReplicaSetUrl());
+        mongoTemplate = TestMongoTemplates.create(client);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Payment.class);
+        repository = new PaymentRepositoryImpl();
+        ReflectionTestUtils.setField(repository, "mongoTemplate", mongoTemplate);
+    }
+
+    @Test
+    void successWritesStatusAndOutboxTogether() {
+        mongoTemplate.insert(payment("p1"));
+        Payment.PaymentDetails details = new Payment.PaymentDetails();
+        details.setUpiId("$patient@upi");
+
+        Payment updated = repository.updateStatus("p1", "rzp-1", "SUCCESS", details, OutboxEvent.pending("DISTRIBUTE_PAYMENT"));
+
+        Payment stored = mongoTemplate.findById("p1", Payment.class);
+        assertThat(updated.getOutbox()).isNotNull();
+        assertThat(stored.getPaymentStatus()).isEqualTo("SUCCESS");
+        assertThat(stored.getPaymentId()).isEqualTo("rzp-1");
+        assertThat(stored.getOutbox().getStatus()).isEqualTo("PENDING");
+        assertThat(stored.getPaymentDetails().getUpiId()).isEqualTo("$patient@upi");
+    }
+
+    @Test
+    void repeatedSuccessKeepsTheExistingOutbox() {
+        mongoTemplate.insert(payment("p2"));
+        repository.updateStatus("p2", "rzp-2", "SUCCESS", null, OutboxEvent.pending("DISTRIBUTE_PAYMENT"));
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is("p2")), new Update().set("outbox.status", "DONE"), Payment.class);
+
+        repository.updateStatus("p2", "rzp-2", "SUCCESS", null, OutboxEvent.pending("DISTRIBUTE_PAYMENT"));
+
+        assertThat(mongoTemplate.findById("p2", Payment.class).getOutbox().getStatus()).isEqualTo("DONE");
+    }
+
+    @Test
+    void otherStatusesAttachNoOutbox() {
+        mongoTemplate.insert(payment("p3"));
+
+        repository.updateStatus("p3", "rzp-3", "FAILED", null, null);
+
+        assertThat(mongoTemplate.findById("p3", Payment.class).getOutbox()).isNull();
+        assertThat(repository.updateStatus("missing", "rzp-x", "FAILED", null, null)).isNull();
+    }
+
+    private static Payment payment(String id) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setPaymentStatus("PENDING");
+        payment.setAmountPaise(10_000L);
+        return payment;
+    }
+}
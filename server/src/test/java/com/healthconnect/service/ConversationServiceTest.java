@@ -0,0 +1,69 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Conversation;
+import com.healthconnect.model.Message;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationServiceTest {
+
+    private static final Instant SAME_MILLI = Instant.parse("2024-05-01T10:00:00.123Z");
+
+    private InMemoryMongo mongo;
+    private ConversationService service;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        service = new ConversationService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongo.template());
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void inboxPagesDoNotSkipConversationsActiveInTheSameMillisecond() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            String doctor = "doctor-" + i;
+            Instant at = i == 0 ? SAME_MILLI.plusMillis(5) : i == 6 ? SAME_MILLI.minusMillis(5) : SAME_MILLI;
+            mongo.template().insert(new Conversation(Message.conversationKey("patient-1", doctor),
+                List.of(doctor, "patient-1"), "hi", doctor, doctor, at, Map.of()));
+        }
+        // Newest first, then _id descending within the shared millisecond
+        expected.add(Message.conversationKey("patient-1", "doctor-0"));
+        for (int i = 5; i >= 1; i--) {
+            expected.add(Message.conversationKey("patient-1", "doctor-" + i));
+        }
+        expected.add(Message.conversationKey("patient-1", "doctor-6"));
+
+        List<String> seen = new ArrayList<>();
+        Instant before = null;
+        String beforeId = null;
+        while (true) {
+            List<Conversation> page = service.getInbox("patient-1", before, beforeId, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(conversation -> seen.add(conversation.getId()));
+            Conversation last = page.get(page.size() - 1);
+            before = last.getLastMessageAt();
+            beforeId = last.getId();
+        }
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,48 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.FulfillmentJob;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FulfillmentQueueTest {
+
+    private static final String NODE = "node-1";
+
+    private InMemoryMongo mongo;
+    private FulfillmentQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        queue = new FulfillmentQueue();
+        ReflectionTestUtils.setField(queue, "mongoTemplate", mongo.template());
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void workerWhoseLeaseWasReclaimedOnTheSameNodeCannotWrite() {
+        queue.enqueue("order-1", "RESERVE_STOCK");
+        FulfillmentJob stalled = queue.claim(NODE, Duration.ZERO);
+        FulfillmentJob current = queue.claim(NODE, Duration.ofMinutes(1));
+
+        assertThat(current.getLeaseToken()).isNotEqualTo(stalled.getLeaseToken());
+        assertThat(queue.advance(stalled, "LINK_PAYMENT", Duration.ofMinutes(1))).isFalse();
+        queue.fail(stalled, "stalled", 5, Duration.ofSeconds(30));
+
+        FulfillmentJob stored = mongo.template().findById("order-1", FulfillmentJob.class);
+        assertThat(stored.getStage()).isEqualTo("RESERVE_STOCK");
+        assertThat(stored.getStatus()).isEqualTo(FulfillmentQueue.RUNNING);
+        assertThat(queue.advance(current, "LINK_PAYMENT", Duration.ofMinutes(1))).isTrue();
+    }
+}
@@ -0,0 +1,110 @@
+package com.healthconnect.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 500_000;
+
+    @Test
+    void millionsOfConcurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        IdGenerator generator = generator(7);
+        long[][] perThread = generateConcurrently(generator);
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            long[] ids = perThread[t];
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).as("thread %d, id %d", t, i).isGreaterThan(ids[i - 1]);
+            }
+            System.arraycopy(ids, 0, all, t * IDS_PER_THREAD, ids.length);
+        }
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).as("duplicate id %d", all[i]).isNotEqualTo(all[i - 1]);
+        }
+    }
+
+    @Test
+    void differentNodesNeverCollide() {
+        IdGenerator first = generator(1);
+        IdGenerator second = generator(2);
+
+        long[] ids = new long[400_000];
+        for (int i = 0; i < ids.length; i += 2) {
+            ids[i] = first.nextId();
+            ids[i + 1] = second.nextId();
+        }
+
+        assertThat(Arrays.stream(ids).distinct().count()).isEqualTo(ids.length);
+    }
+
+    @Test
+    void idsCarryTheirIssueTime() {
+        IdGenerator generator = generator(3);
+        Instant before = Instant.now().minusMillis(1);
+        long id = generator.nextId();
+
+        // The sequence may spill a few milliseconds ahead under load, never behind
+        assertThat(IdGenerator.timestampOf(id)).isBetween(before, Instant.now().plus(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void invoiceNumbersAreReadableAndUnique() {
+        IdGenerator generator = generator(4);
+        List<String> invoices = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            invoices.add(generator.nextInvoiceNumber());
+        }
+
+        assertThat(invoices).doesNotHaveDuplicates();
+        assertThat(invoices).allMatch(invoice -> invoice.matches("INV-\\d{8}-[0-9A-Z]+"));
+        assertThat(generator.nextId("order_")).startsWith("order_");
+    }
+
+    private static long[][] generateConcurrently(IdGenerator generator) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                long[] ids = new long[IDS_PER_THREAD];
+                start.await();
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+        long[][] results = new long[THREADS][];
+        for (int t = 0; t < THREADS; t++) {
+            results[t] = futures.get(t).get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        return results;
+    }
+
+    private static IdGenerator generator(long nodeId) {
+        IdGenerator generator = new IdGenerator();
+        ReflectionTestUtils.setField(generator, "configuredNodeId", nodeId);
+        ReflectionTestUtils.invokeMethod(generator, "init");
+        return generator;
+    }
+}
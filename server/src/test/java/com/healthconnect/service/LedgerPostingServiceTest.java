@@ -0,0 +1,180 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.LedgerAccount;
+import com.healthconnect.model.LedgerPosting;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LedgerPostingServiceTest {
+
+    private static final String PATIENT = LedgerAccount.accountId("PATIENT", "patient-1");
+    private static final String DOCTOR = LedgerAccount.accountId("DOCTOR", "doctor-1");
+    private static final String PLATFORM = LedgerAccount.accountId("PLATFORM", "platform");
+
+    private InMemoryMongo mongo;
+    private MongoTemplate mongoTemplate;
+    private LedgerPostingService service;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        mongoTemplate = mongo.template();
+
+        service = new LedgerPostingService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "pendingTimeoutMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void repostingAnOldJournalDoesNotMoveAccounts() {
+        // Far more journals per account than any recent-journal window would remember
+        for (int i = 0; i < 1_100; i++) {
+            service.post(payment("payment:" + i, 1_000));
+        }
+
+        service.post(payment("payment:0", 1_000));
+        service.post(payment("payment:1099", 1_000));
+
+        LedgerAccount platform = mongoTemplate.findById(PLATFORM, LedgerAccount.class);
+        assertThat(platform.getCreditPaise()).isEqualTo(1_100 * 200L);
+        assertThat(platform.getPostings()).isEqualTo(1_100);
+        assertThat(platform.getPendingJournals()).isEmpty();
+        assertThat(service.trialBalance()).containsEntry("balanced", true).containsEntry("postings", 3_300L);
+    }
+
+    @Test
+    void abandonedJournalIsFinishedOnce() {
+        service.post(payment("payment:a", 10_000));
+        // As if the first attempt died after moving only the doctor's account
+        mongoTemplate.updateMulti(new Query(Criteria.where("journalId").is("payment:a")),
+            new Update().set("applied", false).set("postedAt", Instant.now().minus(10, ChronoUnit.MINUTES)),
+            LedgerPosting.class);
+        claim(DOCTOR, "payment:a", null, Instant.now().minus(10, ChronoUnit.MINUTES), true);
+        for (String account : new String[] {PATIENT, PLATFORM}) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(account)),
+                new Update().set("debitPaise", 0L).set("creditPaise", 0L).set("postings", 0L), LedgerAccount.class);
+        }
+        assertThat(service.trialBalance()).containsEntry("accountsMatchPostings", false);
+
+        service.post(payment("payment:a", 10_000));
+
+        assertThat(mongoTemplate.findById(DOCTOR, LedgerAccount.class).getCreditPaise()).isEqualTo(8_000);
+        assertThat(mongoTemplate.findById(PATIENT, LedgerAccount.class).getDebitPaise()).isEqualTo(10_000);
+        assertThat(mongoTemplate.findById(PLATFORM, LedgerAccount.class).getCreditPaise()).isEqualTo(2_000);
+        assertThat(mongoTemplate.findAll(LedgerAccount.class))
+            .allSatisfy(account -> assertThat(account.getPendingJournals()).isEmpty());
+        assertThat(service.trialBalance()).containsEntry("balanced", true);
+    }
+
+    @Test
+    void journalStillBeingPostedElsewhereIsRetriedLater() {
+        service.post(payment("payment:b", 5_000));
+        mongoTemplate.updateMulti(new Query(Criteria.where("journalId").is("payment:b")),
+            new Update().set("applied", false), LedgerPosting.class);
+        claim(PATIENT, "payment:b", "live", Instant.now(), false);
+
+        assertThatThrownBy(() -> service.post(payment("payment:b", 5_000))).isInstanceOf(IllegalStateException.class);
+        // Its own claims on the other accounts are given back
+        assertThat(mongoTemplate.findById(DOCTOR, LedgerAccount.class).getPendingJournals()).isEmpty();
+        assertThat(mongoTemplate.findById(PATIENT, LedgerAccount.class).getPendingJournals()).hasSize(1);
+    }
+
+    @Test
+    void attemptThatWasTakenOverCannotApplyAgain() {
+        service.post(payment("payment:e", 10_000));
+        // As if a first attempt stalled after claiming, before any $inc
+        mongoTemplate.updateMulti(new Query(Criteria.where("journalId").is("payment:e")),
+            new Update().set("applied", false), LedgerPosting.class);
+        for (String account : new String[] {PATIENT, DOCTOR, PLATFORM}) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(account)),
+                new Update().set("debitPaise", 0L).set("creditPaise", 0L).set("postings", 0L), LedgerAccount.class);
+            claim(account, "payment:e", "stalled", Instant.now().minus(10, ChronoUnit.MINUTES), false);
+        }
+
+        // A later attempt takes over, applies and cleans up
+        service.post(payment("payment:e", 10_000));
+        // ...then the stalled attempt resumes at its $inc
+        Map<String, long[]> movements = new LinkedHashMap<>();
+        movements.put(DOCTOR, new long[] {0, 8_000, 1});
+        Integer matched = ReflectionTestUtils.invokeMethod(service, "increment", movements, "stalled");
+
+        assertThat(matched).isZero();
+        assertThat(mongoTemplate.findById(DOCTOR, LedgerAccount.class).getCreditPaise()).isEqualTo(8_000);
+        assertThat(service.trialBalance()).containsEntry("balanced", true);
+    }
+
+    @Test
+    void sweepDropsClaimsLeftByDeadAttempts() {
+        service.post(payment("payment:f", 1_000));
+        Instant old = Instant.now().minus(10, ChronoUnit.MINUTES);
+        claim(DOCTOR, "payment:f", null, old, true);
+        claim(PATIENT, "payment:gone", "dead", old, false);
+        claim(PLATFORM, "payment:live", "live", Instant.now(), false);
+
+        service.finishAbandonedClaims();
+
+        assertThat(mongoTemplate.findById(DOCTOR, LedgerAccount.class).getPendingJournals()).isEmpty();
+        assertThat(mongoTemplate.findById(PATIENT, LedgerAccount.class).getPendingJournals()).isEmpty();
+        assertThat(mongoTemplate.findById(PLATFORM, LedgerAccount.class).getPendingJournals())
+            .extracting(LedgerAccount.PendingJournal::getJournalId).containsExactly("payment:live");
+    }
+
+    @Test
+    void trialBalanceFlagsAccountsThatDriftFromPostings() {
+        service.post(payment("payment:c", 3_000));
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(DOCTOR)),
+            new Update().inc("creditPaise", 100L), LedgerAccount.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(PATIENT)),
+            new Update().inc("debitPaise", 100L), LedgerAccount.class);
+
+        Map<String, Object> trialBalance = service.trialBalance();
+
+        // Accounts still net to zero, but no longer match what was posted
+        assertThat(trialBalance).containsEntry("accountsMatchPostings", false).containsEntry("balanced", false);
+    }
+
+    @Test
+    void unbalancedJournalsAreRejected() {
+        LedgerPostingService.Journal journal = service.journal("payment:d", "pay-d", "broken")
+            .debit(PATIENT, 1_000)
+            .credit(DOCTOR, 900);
+
+        assertThatThrownBy(() -> service.post(journal)).isInstanceOf(IllegalStateException.class);
+        assertThat(mongoTemplate.count(new Query(), LedgerPosting.class)).isZero();
+    }
+
+    private void claim(String accountId, String journalId, String token, Instant claimedAt, boolean applied) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(accountId)),
+            new Update().push("pendingJournals", new LedgerAccount.PendingJournal(journalId, token, claimedAt, applied)),
+            LedgerAccount.class);
+    }
+
+    // Patient pays, doctor gets 80% and the platform 20%
+    private LedgerPostingService.Journal payment(String journalId, long amountPaise) {
+        long commission = amountPaise / 5;
+        return service.journal(journalId, "pay-" + journalId, "CONSULTATION payment")
+            .debit(PATIENT, amountPaise)
+            .credit(DOCTOR, amountPaise - commission)
+            .credit(PLATFORM, commission);
+    }
+}
@@ -0,0 +1,82 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Medicine;
+import com.healthconnect.repository.MedicineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MedicineSearchIndexTest {
+
+    private final List<Medicine> medicines = List.of(
+        medicine("m1", "Paracetamol 500", "Pain Relief", "Fever and mild pain"),
+        medicine("m2", "Amoxicillin", "Antibiotic", "Bacterial infections"),
+        medicine("m3", "Ibuprofen", "Pain Relief", "Anti-inflammatory pain killer"),
+        medicine("m4", "Cetirizine", "Allergy", "Relieves sneezing"));
+
+    private MedicineRepository repository;
+    private MedicineSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(MedicineRepository.class);
+        when(repository.findAll()).thenReturn(medicines);
+        when(repository.findAllById(anyIterable())).thenAnswer(call -> {
+            List<String> ids = new ArrayList<>();
+            ((Iterable<?>) call.getArgument(0)).forEach(id -> ids.add((String) id));
+            return medicines.stream().filter(m -> ids.contains(m.getId())).toList();
+        });
+
+        MedicineCatalogCache cache = new MedicineCatalogCache();
+        ReflectionTestUtils.setField(cache, "medicineRepository", repository);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        cache.init();
+
+        index = new MedicineSearchIndex();
+        ReflectionTestUtils.setField(index, "medicineRepository", repository);
+        ReflectionTestUtils.setField(index, "medicineCatalogCache", cache);
+        index.rebuild();
+    }
+
+    @Test
+    void containsSearchOnlyReturnsDocsHavingTheWholeQuery() {
+        assertThat(ids(index.search("pain", 10, false))).containsExactly("m1", "m3");
+        assertThat(ids(index.search("cillin", 10, false))).containsExactly("m2");
+        assertThat(ids(index.search("pain relief", 10, false))).containsExactly("m1", "m3");
+        assertThat(index.search("zzz", 10, false)).isEmpty();
+    }
+
+    @Test
+    void shortQueriesMatchInsideWords() {
+        assertThat(ids(index.search("x", 10, false))).containsExactly("m2");
+        assertThat(ids(index.search("ne", 10, false))).containsExactly("m4");
+    }
+
+    @Test
+    void repeatedSearchesAreServedFromTheCatalogCache() {
+        index.search("pain", 10, false);
+        index.search("pain", 10, false);
+        index.search("ibu", 10, true);
+
+        verify(repository, times(1)).findAllById(anyIterable());
+    }
+
+    private static List<String> ids(List<Medicine> result) {
+        return result.stream().map(Medicine::getId).toList();
+    }
+
+    private static Medicine medicine(String id, String name, String category, String description) {
+        return new Medicine(id, name, description, 10.0, category, 5, null);
+    }
+}
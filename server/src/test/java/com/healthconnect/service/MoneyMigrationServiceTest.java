@@ -0,0 +1,99 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Money;
+import com.healthconnect.model.Wallet;
+import com.healthconnect.support.TestMongoTemplates;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The server-side conversion must agree with Money.ofRupees to the paisa, including
+ * half-paisa ties, and must add to paise already credited rather than overwrite them.
+ * Needs a real server for $toDecimal and pipeline updates.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class MoneyMigrationServiceTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private MongoCollection<Document> wallets;
+    private MoneyMigrationService service;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(MONGO.getReplicaSetUrl());
+        mongoTemplate = TestMongoTemplates.create(client);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        wallets = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Wallet.class));
+        wallets.drop();
+        service = new MoneyMigrationService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+    }
+
+    @Test
+    void conversionMatchesOfRupeesForRandomAndTieAmounts() {
+        Random random = new Random(23);
+        List<Double> amounts = new ArrayList<>(List.of(0.005, 0.015, 0.025, 1.005, 2.675, 10.125, 99.995, -0.005, -2.675, 0.0));
+        for (int i = 0; i < 5_000; i++) {
+            // Mostly two- and three-decimal values, which is what the old Double fields held
+            amounts.add(random.nextInt(10_000_000) / (random.nextBoolean() ? 100.0 : 1000.0));
+        }
+        List<Document> legacy = new ArrayList<>();
+        for (int i = 0; i < amounts.size(); i++) {
+            legacy.add(new Document("_id", "w" + i).append("ownerId", "o" + i).append("ownerType", "DOCTOR")
+                .append("balance", amounts.get(i)));
+        }
+        wallets.insertMany(legacy);
+
+        service.migrate();
+
+        for (int i = 0; i < amounts.size(); i++) {
+            Document wallet = wallets.find(new Document("_id", "w" + i)).first();
+            assertThat(wallet).doesNotContainKey("balance");
+            assertThat(wallet.get("balancePaise")).as("balance %s", amounts.get(i))
+                .isEqualTo(Money.ofRupees(amounts.get(i)));
+        }
+    }
+
+    @Test
+    void creditsAppliedBeforeTheMigrationAreKept() {
+        wallets.insertOne(new Document("_id", "early").append("ownerId", "doc").append("ownerType", "DOCTOR")
+            .append("balance", 150.25).append("balancePaise", 4_000L));
+        wallets.insertOne(new Document("_id", "empty").append("ownerId", "doc2").append("ownerType", "DOCTOR")
+            .append("balance", null));
+
+        service.migrate();
+        service.migrate();
+
+        assertThat(wallets.find(new Document("_id", "early")).first().get("balancePaise")).isEqualTo(19_025L);
+        assertThat(wallets.find(new Document("_id", "empty")).first().get("balancePaise")).isEqualTo(0L);
+    }
+}
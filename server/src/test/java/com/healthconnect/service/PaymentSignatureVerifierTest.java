@@ -0,0 +1,78 @@
+package com.healthconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentSignatureVerifierTest {
+
+    private PaymentSignatureVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        verifier = new PaymentSignatureVerifier();
+        ReflectionTestUtils.setField(verifier, "keySecret", "key_secret");
+        ReflectionTestUtils.setField(verifier, "webhookSecret", "webhook_secret");
+        ReflectionTestUtils.invokeMethod(verifier, "init");
+    }
+
+    @Test
+    void acceptsOnlyTheExactPaymentSignature() {
+        String signature = hmac("key_secret", "order_1|pay_1");
+
+        assertThat(verifier.verifyPayment("order_1", "pay_1", signature)).isTrue();
+        assertThat(verifier.verifyPayment("order_1", "pay_1", signature.toUpperCase(Locale.ROOT))).isTrue();
+        assertThat(verifier.verifyPayment("order_1", "pay_2", signature)).isFalse();
+        assertThat(verifier.verifyPayment("order_1", "pay_1", signature.substring(2) + "00")).isFalse();
+        assertThat(verifier.verifyPayment("order_1", "pay_1", signature.substring(1))).isFalse();
+        assertThat(verifier.verifyPayment("order_1", "pay_1", "zz" + signature.substring(2))).isFalse();
+        assertThat(verifier.verifyPayment("order_1", "pay_1", null)).isFalse();
+        assertThat(verifier.verifyPayment(null, "pay_1", signature)).isFalse();
+    }
+
+    @Test
+    void hashesNonAsciiIdsAsUtf8() {
+        assertThat(verifier.verifyPayment("order_é", "pay_✓", hmac("key_secret", "order_é|pay_✓"))).isTrue();
+    }
+
+    @Test
+    void webhooksUseTheWebhookSecret() {
+        String body = "{\"event\":\"payment.captured\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(verifier.verifyWebhook(bytes, hmac("webhook_secret", body))).isTrue();
+        assertThat(verifier.verifyWebhook(bytes, hmac("key_secret", body))).isFalse();
+    }
+
+    @Test
+    void batchResultsFollowInputOrder() {
+        String good = "{\"id\":1}";
+        String bad = "{\"id\":2}";
+        boolean[] results = verifier.verifyWebhooks(List.of(
+            new PaymentSignatureVerifier.WebhookSignature(good.getBytes(StandardCharsets.UTF_8), hmac("webhook_secret", good)),
+            new PaymentSignatureVerifier.WebhookSignature(bad.getBytes(StandardCharsets.UTF_8), hmac("webhook_secret", good)),
+            new PaymentSignatureVerifier.WebhookSignature(null, hmac("webhook_secret", good)),
+            new PaymentSignatureVerifier.WebhookSignature(good.getBytes(StandardCharsets.UTF_8), hmac("webhook_secret", good))));
+
+        assertThat(results).containsExactly(true, false, false, true);
+    }
+
+    private static String hmac(String key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
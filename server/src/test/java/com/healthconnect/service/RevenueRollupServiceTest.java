@@ -0,0 +1,143 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Payment;
+import com.healthconnect.model.RevenueRollup;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevenueRollupServiceTest {
+
+    private static final LocalDateTime PAID_AT = LocalDateTime.of(2024, 3, 15, 10, 20);
+
+    private InMemoryMongo mongo;
+    private MongoTemplate mongoTemplate;
+    private RevenueRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        mongoTemplate = mongo.template();
+
+        service = new RevenueRollupService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "zoneName", "Asia/Kolkata");
+        ReflectionTestUtils.setField(service, "backfillBatchSize", 2);
+        ReflectionTestUtils.setField(service, "pendingTimeoutMs", 60_000L);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void repeatedRecordCountsOnce() {
+        Payment payment = mongoTemplate.insert(payment(10_000));
+
+        service.record(payment);
+        service.record(mongoTemplate.findById(payment.getId(), Payment.class));
+        backfill();
+
+        assertBuckets(10_000, 1);
+        Payment stored = mongoTemplate.findById(payment.getId(), Payment.class);
+        assertThat(stored.getRollupMarker()).isNotNull();
+        assertThat(stored.getRollupPending()).isNull();
+    }
+
+    @Test
+    void backfillCountsUnmarkedPaymentsOnce() {
+        for (int i = 0; i < 5; i++) {
+            mongoTemplate.insert(payment(2_500));
+        }
+
+        backfill();
+        backfill();
+
+        assertBuckets(12_500, 5);
+        assertThat(mongoTemplate.count(new Query(Criteria.where("rollupPending").is(true)), Payment.class)).isZero();
+    }
+
+    @Test
+    void backfillFinishesAClaimAbandonedBetweenBuckets() {
+        Payment payment = mongoTemplate.insert(payment(7_000));
+        Payment other = mongoTemplate.insert(payment(3_000));
+        service.record(other);
+
+        // A writer claimed the payment and incremented the hour bucket, then died before the day bucket
+        String marker = "live:crashed";
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(payment.getId())),
+            new Update().set("rollupMarker", marker).set("rollupPending", true)
+                .set("rollupClaimedAt", Instant.now().minus(1, ChronoUnit.HOURS)),
+            Payment.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("granularity").is(RevenueRollupService.HOUR)),
+            new Update().inc("revenuePaise", 7_000L).inc("payments", 1L).addToSet("markers", marker),
+            RevenueRollup.class);
+
+        backfill();
+
+        assertBuckets(10_000, 2);
+        assertThat(mongoTemplate.findById(payment.getId(), Payment.class).getRollupPending()).isNull();
+        assertThat(mongoTemplate.findAll(RevenueRollup.class))
+            .allSatisfy(bucket -> assertThat(bucket.getMarkers()).isEmpty());
+    }
+
+    @Test
+    void backfillLeavesARecentClaimToItsWriter() {
+        Payment payment = mongoTemplate.insert(payment(4_000));
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(payment.getId())),
+            new Update().set("rollupMarker", "live:running").set("rollupPending", true).set("rollupClaimedAt", Instant.now()),
+            Payment.class);
+
+        backfill();
+
+        assertThat(mongoTemplate.findAll(RevenueRollup.class)).isEmpty();
+        assertThat(mongoTemplate.findById(payment.getId(), Payment.class).getRollupPending()).isTrue();
+    }
+
+    private void backfill() {
+        ReflectionTestUtils.invokeMethod(service, "backfill");
+        assertThat(service.getBackfillStatus().get("error")).isNull();
+    }
+
+    // One hour bucket and one day bucket, each holding the full total
+    private void assertBuckets(long revenuePaise, long payments) {
+        List<RevenueRollup> buckets = mongoTemplate.findAll(RevenueRollup.class);
+        assertThat(buckets).extracting(RevenueRollup::getGranularity)
+            .containsExactlyInAnyOrder(RevenueRollupService.HOUR, RevenueRollupService.DAY);
+        assertThat(buckets).allSatisfy(bucket -> {
+            assertThat(bucket.getRevenuePaise()).isEqualTo(revenuePaise);
+            assertThat(bucket.getPayments()).isEqualTo(payments);
+        });
+        Instant dayStart = PAID_AT.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("Asia/Kolkata"))
+            .truncatedTo(ChronoUnit.DAYS).toInstant();
+        Instant from = dayStart.minus(1, ChronoUnit.DAYS);
+        Instant to = dayStart.plus(2, ChronoUnit.DAYS);
+        assertThat(service.total(from, to, null, null).get("payments")).isEqualTo(payments);
+    }
+
+    private static Payment payment(long amountPaise) {
+        Payment payment = new Payment();
+        payment.setPaymentType("CONSULTATION");
+        payment.setDoctorId("doctor-1");
+        payment.setPaymentStatus("SUCCESS");
+        payment.setAmountPaise(amountPaise);
+        payment.setCreatedAt(PAID_AT);
+        return payment;
+    }
+}
@@ -0,0 +1,185 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.Medicine;
+import com.healthconnect.model.MedicineOrder;
+import com.healthconnect.model.OrderItem;
+import com.healthconnect.model.StockReservation;
+import com.healthconnect.repository.MedicineRepositoryImpl;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockReservationServiceTest {
+
+    private InMemoryMongo mongo;
+    private MongoTemplate mongoTemplate;
+    private StockReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        mongoTemplate = mongo.template();
+
+        StatusTransitionService statusTransitionService = new StatusTransitionService();
+        ReflectionTestUtils.setField(statusTransitionService, "mongoTemplate", mongoTemplate);
+
+        service = new StockReservationService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "statusTransitionService", statusTransitionService);
+        ReflectionTestUtils.setField(service, "timeoutMinutes", 30L);
+        ReflectionTestUtils.setField(service, "sweepBatch", 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        mongoTemplate.insert(medicine("m1", 50));
+        mongoTemplate.insert(medicine("m2", 1_000));
+
+        int checkouts = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < checkouts; i++) {
+            String orderId = "order-" + i;
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    service.reserve(orderId, List.of(item("m1", 1), item("m2", 2)));
+                    return true;
+                } catch (StockReservationService.InsufficientStockException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int reserved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                reserved++;
+            }
+        }
+        pool.shutdown();
+
+        Medicine m1 = mongoTemplate.findById("m1", Medicine.class);
+        Medicine m2 = mongoTemplate.findById("m2", Medicine.class);
+        assertThat(reserved).isEqualTo(50);
+        assertThat(m1.getStock()).isZero();
+        assertThat(m1.getHolds()).hasSize(50);
+        // Failed checkouts gave back the m2 units they had taken
+        assertThat(m2.getStock()).isEqualTo(1_000 - 2 * reserved);
+        assertThat(m2.getHolds()).hasSize(50);
+    }
+
+    @Test
+    void failedReservationReportsTheShortLines() {
+        mongoTemplate.insert(medicine("m1", 5));
+        mongoTemplate.insert(medicine("m2", 1));
+
+        assertThatThrownBy(() -> service.reserve("order-1", List.of(item("m1", 2), item("m2", 3))))
+            .isInstanceOfSatisfying(StockReservationService.InsufficientStockException.class,
+                e -> assertThat(e.getMedicineIds()).containsExactly("m2"));
+        assertThat(mongoTemplate.findById("m1", Medicine.class).getStock()).isEqualTo(5);
+    }
+
+    @Test
+    void catalogEditKeepsHoldsSoReleaseStillRestoresStock() {
+        mongoTemplate.insert(medicine("m1", 10));
+        service.reserve("order-1", List.of(item("m1", 3)));
+
+        MedicineRepositoryImpl repository = new MedicineRepositoryImpl();
+        ReflectionTestUtils.setField(repository, "mongoTemplate", mongoTemplate);
+        Medicine edit = medicine("m1", 20);
+        edit.setPrice(12.5);
+        repository.updateEditableFields("m1", edit);
+
+        service.release("order-1");
+
+        Medicine m1 = mongoTemplate.findById("m1", Medicine.class);
+        assertThat(m1.getPrice()).isEqualTo(12.5);
+        assertThat(m1.getStock()).isEqualTo(23);
+        assertThat(m1.getHolds()).isEmpty();
+    }
+
+    @Test
+    void batchCommitAndReleaseOnlyTouchHeldReservations() {
+        mongoTemplate.insert(medicine("m1", 10));
+        mongoTemplate.insert(medicine("m2", 10));
+        service.reserve("o1", List.of(item("m1", 1), item("m2", 1)));
+        service.reserve("o2", List.of(item("m1", 2)));
+        service.reserve("o3", List.of(item("m2", 3)));
+
+        service.commitAll(List.of("o1", "o2"));
+        // o2 is already committed, so only o3 gives stock back
+        service.releaseAll(List.of("o2", "o3", "unknown"));
+
+        assertThat(mongoTemplate.findById("o1", StockReservation.class).getStatus()).isEqualTo("COMMITTED");
+        assertThat(mongoTemplate.findById("o2", StockReservation.class).getStatus()).isEqualTo("COMMITTED");
+        assertThat(mongoTemplate.findById("o3", StockReservation.class).getStatus()).isEqualTo("RELEASED");
+        Medicine m1 = mongoTemplate.findById("m1", Medicine.class);
+        Medicine m2 = mongoTemplate.findById("m2", Medicine.class);
+        assertThat(m1.getStock()).isEqualTo(7);
+        assertThat(m2.getStock()).isEqualTo(9);
+        assertThat(m1.getHolds()).isEmpty();
+        assertThat(m2.getHolds()).isEmpty();
+    }
+
+    @Test
+    void expiredReservationCancelsUnpaidOrderAndKeepsStockOfProgressedOne() {
+        mongoTemplate.insert(medicine("m1", 10));
+        mongoTemplate.insert(order("unpaid", "PLACED"));
+        mongoTemplate.insert(order("progressed", "PROCESSING"));
+        service.reserve("unpaid", List.of(item("m1", 2)));
+        service.reserve("progressed", List.of(item("m1", 3)));
+        mongoTemplate.updateMulti(new Query(), new Update().set("expiresAt", Instant.now().minusSeconds(1)),
+            StockReservation.class);
+
+        service.releaseExpired();
+
+        MedicineOrder unpaid = mongoTemplate.findById("unpaid", MedicineOrder.class);
+        assertThat(unpaid.getStatus()).isEqualTo("CANCELLED");
+        assertThat(unpaid.getStatusHistory()).extracting("status").containsExactly("CANCELLED");
+        assertThat(mongoTemplate.findById("progressed", MedicineOrder.class).getStatus()).isEqualTo("PROCESSING");
+        assertThat(mongoTemplate.findById("unpaid", StockReservation.class).getStatus()).isEqualTo("RELEASED");
+        assertThat(mongoTemplate.findById("progressed", StockReservation.class).getStatus()).isEqualTo("COMMITTED");
+        assertThat(mongoTemplate.findById("m1", Medicine.class).getStock()).isEqualTo(7);
+        assertThat(mongoTemplate.count(new Query(Criteria.where("status").is("HELD")), StockReservation.class)).isZero();
+    }
+
+    private static Medicine medicine(String id, int stock) {
+        return new Medicine(id, "Medicine " + id, null, 10.0, "General", stock, new ArrayList<>());
+    }
+
+    private static OrderItem item(String medicineId, int quantity) {
+        return new OrderItem(medicineId, null, null, quantity, null);
+    }
+
+    private static MedicineOrder order(String id, String status) {
+        MedicineOrder order = new MedicineOrder();
+        order.setId(id);
+        order.setStatus(status);
+        return order;
+    }
+}
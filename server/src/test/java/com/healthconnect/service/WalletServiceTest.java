@@ -0,0 +1,323 @@
+package com.healthconnect.service;
+
+import com.healthconnect.model.LedgerAccount;
+import com.healthconnect.model.Money;
+import com.healthconnect.model.Payment;
+import com.healthconnect.model.Wallet;
+import com.healthconnect.model.WalletLedgerEntry;
+import com.healthconnect.repository.WalletRepository;
+import com.healthconnect.repository.WalletRepositoryCustom;
+import com.healthconnect.support.InMemoryMongo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WalletServiceTest {
+
+    private InMemoryMongo mongo;
+    private MongoTemplate mongoTemplate;
+    private WalletService service;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo();
+        mongoTemplate = mongo.template();
+
+        IdGenerator idGenerator = new IdGenerator();
+        ReflectionTestUtils.setField(idGenerator, "configuredNodeId", 1L);
+        ReflectionTestUtils.invokeMethod(idGenerator, "init");
+
+        LedgerPostingService ledgerPostingService = new LedgerPostingService();
+        ReflectionTestUtils.setField(ledgerPostingService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(ledgerPostingService, "pendingTimeoutMs", 60_000L);
+
+        service = new WalletService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "idGenerator", idGenerator);
+        ReflectionTestUtils.setField(service, "ledgerPostingService", ledgerPostingService);
+        ReflectionTestUtils.setField(service, "pendingTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "previewSize", 20);
+        ReflectionTestUtils.setField(service, "consultationCommissionBps", 2000);
+        ReflectionTestUtils.setField(service, "medicineCommissionBps", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void statisticsResyncKeepsChangesMadeWhileItAggregates() {
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        ReflectionTestUtils.setField(service, "walletRepository", walletRepository);
+        ReflectionTestUtils.setField(service, "statisticsSnapshotEnabled", true);
+        when(walletRepository.totalsByOwnerType(null))
+            .thenReturn(Map.of("DOCTOR", new WalletRepositoryCustom.OwnerTypeTotals(1, 10_000)))
+            .thenAnswer(call -> {
+                // A credit applied after the aggregate read its wallet
+                ReflectionTestUtils.invokeMethod(service, "adjustStatistics", "DOCTOR", 0L, 5_000L);
+                return Map.of("DOCTOR", new WalletRepositoryCustom.OwnerTypeTotals(1, 10_000));
+            });
+
+        service.resyncStatisticsSnapshot();
+        service.resyncStatisticsSnapshot();
+
+        assertThat(service.getWalletStatistics().getTotalDoctorBalance()).isEqualTo(Money.toRupees(15_000));
+    }
+
+    @Test
+    void redeliveredPaymentCreditsOnce() {
+        Payment payment = consultation("pay-1", "doctor-1", 100_000);
+
+        service.distributePayment(payment);
+        service.distributePayment(payment);
+
+        assertThat(balance("doctor-1", "DOCTOR")).isEqualTo(80_000);
+        assertThat(balance(WalletService.PLATFORM_OWNER_ID, WalletService.PLATFORM)).isEqualTo(20_000);
+        Wallet doctor = wallet("doctor-1", "DOCTOR");
+        assertThat(doctor.getTransactionCount()).isEqualTo(1);
+        assertThat(doctor.getPendingEntries()).isEmpty();
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries())
+            .singleElement()
+            .satisfies(entry -> {
+                assertThat(entry.getApplied()).isTrue();
+                assertThat(entry.getBalanceAfterPaise()).isEqualTo(80_000);
+            });
+    }
+
+    @Test
+    void abandonedCreditIsFinishedOnce() {
+        Payment payment = consultation("pay-2", "doctor-2", 50_000);
+        service.distributePayment(payment);
+        Wallet doctor = wallet("doctor-2", "DOCTOR");
+
+        // As if the first delivery died after the $inc, before marking the entry applied
+        mongoTemplate.updateFirst(new Query(Criteria.where("walletId").is(doctor.getId())),
+            new Update().set("applied", false), WalletLedgerEntry.class);
+        claim(doctor.getId(), "payment:pay-2", "dead", Instant.now().minus(10, ChronoUnit.MINUTES), true);
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries()).isEmpty();
+
+        service.distributePayment(payment);
+
+        assertThat(balance("doctor-2", "DOCTOR")).isEqualTo(40_000);
+        assertThat(wallet("doctor-2", "DOCTOR").getPendingEntries()).isEmpty();
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries()).hasSize(1);
+    }
+
+    @Test
+    void creditAbandonedBeforeTheIncrementIsApplied() {
+        Wallet doctor = service.getOrCreateWallet("doctor-3", "DOCTOR");
+        WalletLedgerEntry entry = unappliedEntry(doctor, "payment:pay-3", 24_000);
+        entry.setOwnerId("doctor-3");
+        entry.setOwnerType("DOCTOR");
+        entry.setPaymentId("rzp-pay-3");
+        entry.setType(Wallet.TransactionType.CREDIT);
+        mongoTemplate.insert(entry);
+        claim(doctor.getId(), "payment:pay-3", "dead", Instant.now().minus(10, ChronoUnit.MINUTES), false);
+
+        service.distributePayment(consultation("pay-3", "doctor-3", 30_000));
+
+        assertThat(balance("doctor-3", "DOCTOR")).isEqualTo(24_000);
+        assertThat(wallet("doctor-3", "DOCTOR").getPendingEntries()).isEmpty();
+    }
+
+    @Test
+    void creditStillInProgressElsewhereIsRetriedLater() {
+        Wallet doctor = service.getOrCreateWallet("doctor-4", "DOCTOR");
+        mongoTemplate.insert(unappliedEntry(doctor, "payment:pay-4", 8_000));
+        claim(doctor.getId(), "payment:pay-4", "live", Instant.now(), false);
+
+        assertThatThrownBy(() -> service.distributePayment(consultation("pay-4", "doctor-4", 10_000)))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(balance("doctor-4", "DOCTOR")).isZero();
+    }
+
+    @Test
+    void attemptThatWasTakenOverCannotApplyAgain() {
+        Wallet doctor = service.getOrCreateWallet("doctor-6", "DOCTOR");
+        WalletLedgerEntry stalled = unappliedEntry(doctor, "payment:pay-6", 16_000);
+        mongoTemplate.insert(stalled);
+        claim(doctor.getId(), "payment:pay-6", "stalled", Instant.now().minus(10, ChronoUnit.MINUTES), false);
+
+        // A later delivery takes over, applies and cleans up
+        service.distributePayment(consultation("pay-6", "doctor-6", 20_000));
+        // ...then the stalled attempt resumes at its $inc
+        Wallet resumed = ReflectionTestUtils.invokeMethod(service, "increment", stalled, "stalled");
+
+        assertThat(resumed).isNull();
+        assertThat(balance("doctor-6", "DOCTOR")).isEqualTo(16_000);
+        assertThat(wallet("doctor-6", "DOCTOR").getTransactionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void sweepFinishesClaimsLeftByDeadAttempts() {
+        Wallet doctor = service.getOrCreateWallet("doctor-7", "DOCTOR");
+        mongoTemplate.insert(unappliedEntry(doctor, "payment:applied", 5_000));
+        mongoTemplate.insert(unappliedEntry(doctor, "payment:unapplied", 7_000));
+        Instant old = Instant.now().minus(10, ChronoUnit.MINUTES);
+        claim(doctor.getId(), "payment:applied", "dead-1", old, true);
+        claim(doctor.getId(), "payment:unapplied", "dead-2", old, false);
+        claim(doctor.getId(), "payment:live", "live", Instant.now(), false);
+
+        service.finishAbandonedClaims();
+
+        assertThat(wallet("doctor-7", "DOCTOR").getPendingEntries())
+            .extracting(Wallet.PendingEntry::getKey).containsExactly("payment:live");
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries())
+            .extracting(WalletLedgerEntry::getDedupKey).containsExactly("payment:applied");
+    }
+
+    @Test
+    void withdrawalsKeepTheLedgerAccountInStepWithTheWallet() {
+        service.distributePayment(consultation("pay-5", "doctor-5", 100_000));
+
+        assertThat(service.processWithdrawal("doctor-5", "DOCTOR", 500.25, "HDFC ****1234", "w-1")).isTrue();
+        assertThat(service.processWithdrawal("doctor-5", "DOCTOR", 10_000.0, "HDFC ****1234", "w-2")).isFalse();
+
+        LedgerPostingService ledger = (LedgerPostingService) ReflectionTestUtils.getField(service, "ledgerPostingService");
+        LedgerAccount account = ledger.getAccount("DOCTOR", "doctor-5");
+        assertThat(account.getCreditPaise() - account.getDebitPaise()).isEqualTo(balance("doctor-5", "DOCTOR")).isEqualTo(29_975);
+        assertThat(ledger.getAccount(WalletService.PAYOUT, WalletService.PAYOUT_OWNER_ID).getCreditPaise()).isEqualTo(50_025);
+        assertThat(ledger.trialBalance()).containsEntry("balanced", true);
+    }
+
+    @Test
+    void retriedWithdrawalDebitsOnce() {
+        service.distributePayment(consultation("pay-8", "doctor-8", 100_000));
+        Wallet doctor = wallet("doctor-8", "DOCTOR");
+
+        assertThat(service.processWithdrawal("doctor-8", "DOCTOR", 300.0, "HDFC ****1234", "w-8")).isTrue();
+        assertThat(service.processWithdrawal("doctor-8", "DOCTOR", 300.0, "HDFC ****1234", "w-8")).isTrue();
+        // Refused for lack of balance, then nothing about it is visible
+        assertThat(service.processWithdrawal("doctor-8", "DOCTOR", 600.0, "HDFC ****1234", "w-9")).isFalse();
+
+        assertThat(balance("doctor-8", "DOCTOR")).isEqualTo(50_000);
+        assertThat(wallet("doctor-8", "DOCTOR").getPendingEntries()).isEmpty();
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries())
+            .extracting(WalletLedgerEntry::getType)
+            .containsExactly(Wallet.TransactionType.WITHDRAWAL, Wallet.TransactionType.CREDIT);
+        LedgerPostingService ledger = (LedgerPostingService) ReflectionTestUtils.getField(service, "ledgerPostingService");
+        assertThat(ledger.getAccount(WalletService.PAYOUT, WalletService.PAYOUT_OWNER_ID).getCreditPaise()).isEqualTo(30_000);
+    }
+
+    @Test
+    void withdrawalInterruptedAfterTheDebitIsFinishedByTheRetry() {
+        service.distributePayment(consultation("pay-9", "doctor-9", 100_000));
+        Wallet doctor = wallet("doctor-9", "DOCTOR");
+        // As if the first attempt died right after its debit: claim applied, entry not yet marked
+        WalletLedgerEntry entry = unappliedEntry(doctor, "withdrawal:w-10", 20_000);
+        entry.setType(Wallet.TransactionType.WITHDRAWAL);
+        mongoTemplate.insert(entry);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(doctor.getId())),
+            new Update().inc("balancePaise", -20_000L), Wallet.class);
+        claim(doctor.getId(), "withdrawal:w-10", null, Instant.now().minus(10, ChronoUnit.MINUTES), true);
+
+        assertThat(service.processWithdrawal("doctor-9", "DOCTOR", 200.0, "HDFC ****1234", "w-10")).isTrue();
+
+        assertThat(balance("doctor-9", "DOCTOR")).isEqualTo(60_000);
+        assertThat(service.getLedgerPage(doctor.getId(), null, 10).entries()).hasSize(2);
+        LedgerPostingService ledger = (LedgerPostingService) ReflectionTestUtils.getField(service, "ledgerPostingService");
+        LedgerAccount account = ledger.getAccount("DOCTOR", "doctor-9");
+        assertThat(account.getCreditPaise() - account.getDebitPaise()).isEqualTo(60_000);
+    }
+
+    @Test
+    void tenThousandConcurrentCreditsLandExactly() throws Exception {
+        int credits = 10_000;
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < credits; i++) {
+            // 1 to 7 rupees and change, so commission rounding is exercised too
+            Payment payment = consultation("stress-" + i, "doctor-hot", 100 + (i % 700));
+            results.add(pool.submit(() -> {
+                start.await();
+                service.distributePayment(payment);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(120, TimeUnit.SECONDS);
+        }
+        // Redelivering a slice of them afterwards must not move any balance
+        for (int i = 0; i < credits; i += 10) {
+            service.distributePayment(consultation("stress-" + i, "doctor-hot", 100 + (i % 700)));
+        }
+        pool.shutdown();
+
+        long payee = 0;
+        long commission = 0;
+        for (int i = 0; i < credits; i++) {
+            Money.Split split = Money.split(100 + (i % 700), 2000);
+            payee += split.payeePaise();
+            commission += split.commissionPaise();
+        }
+        Wallet doctor = wallet("doctor-hot", "DOCTOR");
+        assertThat(doctor.getBalancePaise()).isEqualTo(payee);
+        assertThat(doctor.getTransactionCount()).isEqualTo(credits);
+        assertThat(doctor.getPendingEntries()).isEmpty();
+        assertThat(balance(WalletService.PLATFORM_OWNER_ID, WalletService.PLATFORM)).isEqualTo(commission);
+        assertThat(mongoTemplate.count(new Query(Criteria.where("ownerId").is("doctor-hot")), Wallet.class)).isEqualTo(1);
+        assertThat(mongoTemplate.count(new Query(Criteria.where("walletId").is(doctor.getId())), WalletLedgerEntry.class))
+            .isEqualTo(credits);
+    }
+
+    private WalletLedgerEntry unappliedEntry(Wallet wallet, String dedupKey, long amountPaise) {
+        WalletLedgerEntry entry = new WalletLedgerEntry();
+        entry.setWalletId(wallet.getId());
+        entry.setDedupKey(dedupKey);
+        entry.setAmountPaise(amountPaise);
+        entry.setCreatedAt(Instant.now().minus(10, ChronoUnit.MINUTES));
+        entry.setApplied(false);
+        return entry;
+    }
+
+    private void claim(String walletId, String key, String token, Instant claimedAt, boolean applied) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(walletId)),
+            new Update().push("pendingEntries", new Wallet.PendingEntry(key, applied ? null : token, claimedAt, applied)),
+            Wallet.class);
+    }
+
+    private Wallet wallet(String ownerId, String ownerType) {
+        return mongoTemplate.findOne(new Query(Criteria.where("ownerId").is(ownerId).and("ownerType").is(ownerType)),
+            Wallet.class);
+    }
+
+    private long balance(String ownerId, String ownerType) {
+        return wallet(ownerId, ownerType).getBalancePaise();
+    }
+
+    static Payment consultation(String id, String doctorId, long amountPaise) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setPaymentId("rzp-" + id);
+        payment.setPatientId("patient-1");
+        payment.setDoctorId(doctorId);
+        payment.setPaymentType("CONSULTATION");
+        payment.setPaymentStatus("SUCCESS");
+        payment.setAmountPaise(amountPaise);
+        return payment;
+    }
+}
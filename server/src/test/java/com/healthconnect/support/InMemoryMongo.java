@@ -0,0 +1,36 @@
+package com.healthconnect.support;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * In-process MongoDB (mongo-java-server) behind a real MongoTemplate.
+ * Services are wired by hand with ReflectionTestUtils, so no Spring context starts.
+ * Its query planner ignores non-unique secondary indexes; index usage is tested
+ * against a real server (OrderRepositoryIndexTest).
+ */
+public final class InMemoryMongo implements AutoCloseable {
+
+    private final MongoServer server;
+    private final MongoClient client;
+    private final MongoTemplate template;
+
+    public InMemoryMongo() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        template = TestMongoTemplates.create(client);
+    }
+
+    public MongoTemplate template() {
+        return template;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        server.shutdownNow();
+    }
+}